@@ -0,0 +1,94 @@
+package com.reactnativeemojichatinput;
+
+import org.json.JSONException;
+import java.util.Random;
+
+/**
+ * 基准测试共用的注册表和消息样本。
+ *
+ * 所有数据由固定种子生成，不读取仓库中的配置和图片，任何机器上运行得到的输入完全相同。
+ * 消息按长度分为四档：short对应普通聊天消息，medium和long对应长消息，paste对应大段粘贴。
+ * 文本混合英文单词、中文、已知emoji、配置中没有的[name]和不完整的'['。
+ */
+final class EmojiBenchmarkData {
+    static final int REGISTRY_SIZE = 256;
+    // 每档生成的消息数，必须是2的幂，基准中按位与轮转
+    static final int MESSAGE_COUNT = 256;
+
+    private static final long SEED = 0x454D4A49L;
+    private static final String[] WORDS = {
+        "ok", "hello", "thanks", "see", "you", "tomorrow", "lol", "nice", "photo", "meeting",
+        "好的", "哈哈", "收到", "晚上见", "辛苦了", "没问题", "在吗", "谢谢"
+    };
+
+    private EmojiBenchmarkData() {}
+
+    static EmojiRegistry registry() {
+        StringBuilder json = new StringBuilder("{\"version\":\"bench\",\"emojis\":{");
+        for (int i = 0; i < REGISTRY_SIZE; i++) {
+            if (i > 0) json.append(',');
+            String name = emojiName(i);
+            json.append('"').append(name).append("\":{\"name\":\"").append(name)
+                .append("\",\"image\":\"").append(name).append(".png\",\"width\":24,\"height\":24}");
+        }
+        json.append("}}");
+        try {
+            return EmojiRegistry.fromJson(json.toString());
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param distribution short、medium、long或paste
+     */
+    static String[] messages(String distribution) {
+        int minLength;
+        int maxLength;
+        switch (distribution) {
+            case "short":
+                minLength = 4;
+                maxLength = 32;
+                break;
+            case "medium":
+                minLength = 32;
+                maxLength = 256;
+                break;
+            case "long":
+                minLength = 256;
+                maxLength = 2048;
+                break;
+            case "paste":
+                minLength = 8192;
+                maxLength = 32768;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+
+        Random random = new Random(SEED ^ distribution.hashCode());
+        String[] messages = new String[MESSAGE_COUNT];
+        for (int m = 0; m < MESSAGE_COUNT; m++) {
+            int length = minLength + random.nextInt(maxLength - minLength + 1);
+            StringBuilder text = new StringBuilder(length + 32);
+            while (text.length() < length) {
+                int kind = random.nextInt(100);
+                if (kind < 20) {
+                    text.append('[').append(emojiName(random.nextInt(REGISTRY_SIZE))).append(']');
+                } else if (kind < 23) {
+                    text.append("[unknown_").append(random.nextInt(64)).append(']');
+                } else if (kind < 25) {
+                    text.append("[a ");
+                } else {
+                    text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+            }
+            messages[m] = text.toString();
+        }
+        return messages;
+    }
+
+    private static String emojiName(int index) {
+        return "emoji_" + index;
+    }
+}
@@ -0,0 +1,66 @@
+package com.reactnativeemojichatinput;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 去掉[name]标记的纯文本提取，对比正则replaceAll
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class EmojiPlainTextBenchmark {
+    private static final Pattern EMOJI_PATTERN = Pattern.compile("\\[([a-zA-Z0-9_]+)\\]");
+
+    @Param({"short", "medium", "long", "paste"})
+    public String distribution;
+
+    private String[] messages;
+    private int index;
+    private final StringBuilder reused = new StringBuilder();
+
+    @Setup
+    public void setUp() {
+        messages = EmojiBenchmarkData.messages(distribution);
+    }
+
+    private String next() {
+        String message = messages[index];
+        index = (index + 1) & (EmojiBenchmarkData.MESSAGE_COUNT - 1);
+        return message;
+    }
+
+    @Benchmark
+    public String scanner() {
+        return EmojiTokenScanner.getPlainText(next());
+    }
+
+    /**
+     * 复用StringBuilder，对应EmojiTextView在构建span的同一遍扫描中拼接纯文本
+     */
+    @Benchmark
+    public int scannerReusedBuilder() {
+        reused.setLength(0);
+        EmojiTokenScanner.appendPlainText(next(), reused);
+        return reused.length();
+    }
+
+    @Benchmark
+    public String regexBaseline() {
+        return EMOJI_PATTERN.matcher(next()).replaceAll("");
+    }
+}
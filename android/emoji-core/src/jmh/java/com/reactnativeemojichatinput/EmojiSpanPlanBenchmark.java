@@ -0,0 +1,55 @@
+package com.reactnativeemojichatinput;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * span规划的构建：复用同一个EmojiSpanPlan（输入框的做法）对比每条消息新建
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class EmojiSpanPlanBenchmark {
+    @Param({"short", "medium", "long", "paste"})
+    public String distribution;
+
+    private EmojiRegistry registry;
+    private String[] messages;
+    private int index;
+    private final EmojiSpanPlan reused = new EmojiSpanPlan();
+
+    @Setup
+    public void setUp() {
+        registry = EmojiBenchmarkData.registry();
+        messages = EmojiBenchmarkData.messages(distribution);
+    }
+
+    private String next() {
+        String message = messages[index];
+        index = (index + 1) & (EmojiBenchmarkData.MESSAGE_COUNT - 1);
+        return message;
+    }
+
+    @Benchmark
+    public int reusedPlan() {
+        return reused.build(next(), registry).size();
+    }
+
+    @Benchmark
+    public int newPlan() {
+        return new EmojiSpanPlan().build(next(), registry).size();
+    }
+}
@@ -0,0 +1,109 @@
+package com.reactnativeemojichatinput;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 标记扫描的吞吐量：EmojiTokenScanner对比原先基于正则和子串查找的实现
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class EmojiTokenizeBenchmark {
+    private static final Pattern EMOJI_PATTERN = Pattern.compile("\\[([a-zA-Z0-9_]+)\\]");
+
+    @Param({"short", "medium", "long", "paste"})
+    public String distribution;
+
+    private EmojiRegistry registry;
+    private String[] messages;
+    private int index;
+    private final Checksum checksum = new Checksum();
+
+    @Setup
+    public void setUp() {
+        registry = EmojiBenchmarkData.registry();
+        messages = EmojiBenchmarkData.messages(distribution);
+        // 两种实现必须得到相同的片段序列，否则比较的不是同一份工作
+        for (String message : messages) {
+            if (scan(message) != regex(message)) {
+                throw new IllegalStateException("Scanner and regex disagree on: " + message);
+            }
+        }
+    }
+
+    private String next() {
+        String message = messages[index];
+        index = (index + 1) & (EmojiBenchmarkData.MESSAGE_COUNT - 1);
+        return message;
+    }
+
+    @Benchmark
+    public int scanner() {
+        return scan(next());
+    }
+
+    @Benchmark
+    public int regexBaseline() {
+        return regex(next());
+    }
+
+    private int scan(String text) {
+        checksum.value = 0;
+        EmojiTokenScanner.scan(text, registry, checksum);
+        return checksum.value;
+    }
+
+    /**
+     * 与Checksum相同的累加方式：普通文本片段累加结束位置，标记累加emoji id
+     */
+    private int regex(String text) {
+        Matcher matcher = EMOJI_PATTERN.matcher(text);
+        int value = 0;
+        int textStart = 0;
+        while (matcher.find()) {
+            int textEnd = matcher.start();
+            if (textEnd > textStart) {
+                value = 31 * value + textEnd;
+            }
+            value = 31 * value + registry.getId(matcher.group(1));
+            textStart = matcher.end();
+        }
+        if (text.length() > textStart) {
+            value = 31 * value + text.length();
+        }
+        return value;
+    }
+
+    /**
+     * 把回调结果累加为校验值返回给JMH，避免被优化掉；regex()按同样的方式累加
+     */
+    private static final class Checksum implements EmojiTokenScanner.Callback {
+        int value;
+
+        @Override
+        public void onText(CharSequence text, int start, int end) {
+            value = 31 * value + end;
+        }
+
+        @Override
+        public void onEmoji(CharSequence text, int start, int end, int emojiId) {
+            value = 31 * value + emojiId;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.reactnativeemojichatinput;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 由emoji配置预编译出的只读注册表。
+ *
+ * emoji按名称排序后分配连续的整数id，图片路径和宽高保存在按id索引的数组中，
+ * 渲染和输入时只做数组访问，不再反复查询JSONObject。相同内容的配置在进程内只解析一次，
+ * 所有EmojiTextView和EmojiChatInputView共享同一个实例。
+ */
+public final class EmojiRegistry {
+    public static final int NO_EMOJI = -1;
+
+    private static final int DEFAULT_SIZE = 24;
+    private static final int MAX_CACHED_REGISTRIES = 4;
+
+    private static final Map<String, EmojiRegistry> registries =
+        new LinkedHashMap<String, EmojiRegistry>(MAX_CACHED_REGISTRIES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EmojiRegistry> eldest) {
+                return size() > MAX_CACHED_REGISTRIES;
+            }
+        };
+    private static int nextVersion = 1;
+    // 配置更新时所有view都会对同一对注册表求差异，只保留最近一次的结果
+    private static Diff lastDiff;
+
+    private final int version;
+    private final String configVersion;
+    private final String[] names;
+    private final String[] imagePaths;
+    private final int[] widths;
+    private final int[] heights;
+    private final Map<String, Integer> ids;
+    private final int maxNameLength;
+    // 以String.hashCode为key的开放寻址表，供扫描器在不创建子串的情况下查找名称
+    private final int[] hashSlots;
+    private final int hashMask;
+    private final long contentHash;
+
+    private EmojiRegistry(int version, String configVersion, String[] names, String[] imagePaths,
+                          int[] widths, int[] heights) {
+        this.version = version;
+        this.configVersion = configVersion;
+        this.names = names;
+        this.imagePaths = imagePaths;
+        this.widths = widths;
+        this.heights = heights;
+
+        Map<String, Integer> idMap = new HashMap<>(names.length * 2);
+        int maxLength = 0;
+        for (int i = 0; i < names.length; i++) {
+            idMap.put(names[i], i);
+            maxLength = Math.max(maxLength, names[i].length());
+        }
+        this.ids = Collections.unmodifiableMap(idMap);
+        this.maxNameLength = maxLength;
+
+        int capacity = 2;
+        while (capacity < names.length * 2) {
+            capacity <<= 1;
+        }
+        this.hashSlots = new int[capacity];
+        this.hashMask = capacity - 1;
+        Arrays.fill(hashSlots, NO_EMOJI);
+        for (int i = 0; i < names.length; i++) {
+            int slot = mix(names[i].hashCode()) & hashMask;
+            while (hashSlots[slot] != NO_EMOJI) {
+                slot = (slot + 1) & hashMask;
+            }
+            hashSlots[slot] = i;
+        }
+
+        long hash = configVersion.hashCode();
+        for (int i = 0; i < names.length; i++) {
+            hash = 31 * hash + names[i].hashCode();
+            hash = 31 * hash + imagePaths[i].hashCode();
+            hash = 31 * hash + widths[i];
+            hash = 31 * hash + heights[i];
+        }
+        this.contentHash = hash;
+    }
+
+    /**
+     * 获取配置JSON对应的注册表，内容相同的配置返回同一个实例
+     */
+    public static EmojiRegistry fromJson(String configJson) throws JSONException {
+        synchronized (registries) {
+            EmojiRegistry registry = registries.get(configJson);
+            if (registry != null) {
+                return registry;
+            }
+        }
+
+        EmojiRegistry parsed = parse(new JSONObject(configJson));
+        synchronized (registries) {
+            EmojiRegistry registry = registries.get(configJson);
+            if (registry == null) {
+                registry = parsed;
+                registries.put(configJson, registry);
+            }
+            return registry;
+        }
+    }
+
+    private static EmojiRegistry parse(JSONObject config) throws JSONException {
+        JSONObject emojis = config.getJSONObject("emojis");
+        List<String> sortedNames = new ArrayList<>(emojis.length());
+        Iterator<String> keys = emojis.keys();
+        while (keys.hasNext()) {
+            String name = keys.next();
+            JSONObject emoji = emojis.optJSONObject(name);
+            if (emoji != null && emoji.has("image")) {
+                sortedNames.add(name);
+            }
+        }
+        Collections.sort(sortedNames);
+
+        int count = sortedNames.size();
+        String[] names = new String[count];
+        String[] imagePaths = new String[count];
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        for (int i = 0; i < count; i++) {
+            String name = sortedNames.get(i);
+            JSONObject emoji = emojis.getJSONObject(name);
+            names[i] = name.intern();
+            imagePaths[i] = emoji.getString("image").intern();
+            widths[i] = emoji.optInt("width", DEFAULT_SIZE);
+            heights[i] = emoji.optInt("height", DEFAULT_SIZE);
+        }
+
+        int version;
+        synchronized (registries) {
+            version = nextVersion++;
+        }
+        return new EmojiRegistry(version, config.optString("version", ""), names, imagePaths, widths, heights);
+    }
+
+    /**
+     * 计算从from到to新增、删除或图片、尺寸发生变化的emoji名称。内容相同的两份配置返回空差异
+     */
+    public static Diff diff(EmojiRegistry from, EmojiRegistry to) {
+        synchronized (registries) {
+            Diff cached = lastDiff;
+            if (cached != null && cached.from == from && cached.to == to) {
+                return cached;
+            }
+        }
+
+        Set<String> changed = new HashSet<>();
+        for (int id = 0; id < from.names.length; id++) {
+            int newId = to.getId(from.names[id]);
+            if (newId == NO_EMOJI
+                || !from.imagePaths[id].equals(to.imagePaths[newId])
+                || from.widths[id] != to.widths[newId]
+                || from.heights[id] != to.heights[newId]) {
+                changed.add(from.names[id]);
+            }
+        }
+        for (String name : to.names) {
+            if (!from.ids.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+
+        Diff diff = new Diff(from, to, changed);
+        synchronized (registries) {
+            lastDiff = diff;
+        }
+        return diff;
+    }
+
+    /**
+     * 进程内唯一的注册表版本号，内容不同的配置版本号一定不同
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * 配置文件中声明的version字段
+     */
+    public String getConfigVersion() {
+        return configVersion;
+    }
+
+    /**
+     * 由配置内容计算出的指纹，与version不同，跨进程稳定，用于判断磁盘缓存是否需要失效
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int getMaxNameLength() {
+        return maxNameLength;
+    }
+
+    /**
+     * 根据名称查找emoji id，不存在时返回NO_EMOJI
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : NO_EMOJI;
+    }
+
+    /**
+     * 根据text[start, end)查找emoji id，hash必须等于该区间字符按String.hashCode规则计算的值。
+     * 扫描器在逐字符扫描时增量计算hash，查找过程不分配任何对象
+     */
+    public int getId(CharSequence text, int start, int end, int hash) {
+        int length = end - start;
+        if (length <= 0 || length > maxNameLength) {
+            return NO_EMOJI;
+        }
+        int slot = mix(hash) & hashMask;
+        int id;
+        while ((id = hashSlots[slot]) != NO_EMOJI) {
+            if (regionEquals(names[id], text, start, length)) {
+                return id;
+            }
+            slot = (slot + 1) & hashMask;
+        }
+        return NO_EMOJI;
+    }
+
+    private static boolean regionEquals(String name, CharSequence text, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    public boolean contains(String name) {
+        return ids.containsKey(name);
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public String getImagePath(int id) {
+        return imagePaths[id];
+    }
+
+    public int getWidth(int id) {
+        return widths[id];
+    }
+
+    public int getHeight(int id) {
+        return heights[id];
+    }
+
+    /**
+     * 两份配置之间发生变化的emoji名称，用于判断已显示的文本是否需要重新渲染
+     */
+    public static final class Diff {
+        final EmojiRegistry from;
+        final EmojiRegistry to;
+        private final Set<String> changedNames;
+
+        Diff(EmojiRegistry from, EmojiRegistry to, Set<String> changedNames) {
+            this.from = from;
+            this.to = to;
+            this.changedNames = Collections.unmodifiableSet(changedNames);
+        }
+
+        public boolean isEmpty() {
+            return changedNames.isEmpty();
+        }
+
+        public boolean contains(String name) {
+            return changedNames.contains(name);
+        }
+
+        public Set<String> getChangedNames() {
+            return changedNames;
+        }
+
+        /**
+         * 文本中是否有[name]标记引用了发生变化的emoji
+         */
+        public boolean affects(CharSequence text) {
+            if (text == null || changedNames.isEmpty()) return false;
+            boolean[] found = new boolean[1];
+            EmojiTokenScanner.scan(text, null, new EmojiTokenScanner.Callback() {
+                @Override
+                public void onText(CharSequence scanned, int start, int end) {}
+
+                @Override
+                public void onEmoji(CharSequence scanned, int start, int end, int emojiId) {
+                    if (!found[0] && changedNames.contains(scanned.subSequence(start + 1, end - 1).toString())) {
+                        found[0] = true;
+                    }
+                }
+            });
+            return found[0];
+        }
+    }
+}
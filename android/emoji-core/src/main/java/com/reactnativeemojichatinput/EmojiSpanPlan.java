@@ -0,0 +1,69 @@
+package com.reactnativeemojichatinput;
+
+/**
+ * 一段文本的span规划：按顺序记录的[start, end, emojiId]区间。
+ *
+ * 区间保存在可复用的扁平int数组中，相邻的普通文本和配置中没有的标记合并为一个NO_EMOJI区间，
+ * 已知emoji的标记各占一个区间。view根据规划创建span，JS根据规划还原tokens，不再重复解析[name]标记。
+ */
+public final class EmojiSpanPlan implements EmojiTokenScanner.Callback {
+    private int[] tokens = new int[48];
+    private int size;
+
+    /**
+     * 扫描text并重建规划，之前的结果被覆盖
+     */
+    public EmojiSpanPlan build(CharSequence text, EmojiRegistry registry) {
+        size = 0;
+        EmojiTokenScanner.scan(text, registry, this);
+        return this;
+    }
+
+    /**
+     * 区间数量
+     */
+    public int size() {
+        return size / 3;
+    }
+
+    public int getStart(int index) {
+        return tokens[index * 3];
+    }
+
+    public int getEnd(int index) {
+        return tokens[index * 3 + 1];
+    }
+
+    /**
+     * NO_EMOJI表示普通文本
+     */
+    public int getEmojiId(int index) {
+        return tokens[index * 3 + 2];
+    }
+
+    @Override
+    public void onText(CharSequence text, int start, int end) {
+        add(start, end, EmojiRegistry.NO_EMOJI);
+    }
+
+    @Override
+    public void onEmoji(CharSequence text, int start, int end, int emojiId) {
+        add(start, end, emojiId);
+    }
+
+    private void add(int start, int end, int id) {
+        if (id == EmojiRegistry.NO_EMOJI && size > 0
+            && tokens[size - 1] == EmojiRegistry.NO_EMOJI && tokens[size - 2] == start) {
+            tokens[size - 2] = end;
+            return;
+        }
+        if (size + 3 > tokens.length) {
+            int[] grown = new int[tokens.length * 2];
+            System.arraycopy(tokens, 0, grown, 0, size);
+            tokens = grown;
+        }
+        tokens[size++] = start;
+        tokens[size++] = end;
+        tokens[size++] = id;
+    }
+}
@@ -0,0 +1,104 @@
+package com.reactnativeemojichatinput;
+
+/**
+ * 单遍扫描文本中的[name]形式emoji标记，替代java.util.regex。
+ *
+ * 扫描时增量计算名称的hash并直接在EmojiRegistry中查找，不创建Matcher和子串。
+ * 标记的识别规则与原正则\[([a-zA-Z0-9_]+)\]一致，配置中不存在的名称以NO_EMOJI回调。
+ */
+public final class EmojiTokenScanner {
+
+    public interface Callback {
+        /**
+         * text[start, end)为普通文本
+         */
+        void onText(CharSequence text, int start, int end);
+
+        /**
+         * text[start, end)为完整的[name]标记，emojiId为NO_EMOJI表示配置中没有该emoji
+         */
+        void onEmoji(CharSequence text, int start, int end, int emojiId);
+    }
+
+    private EmojiTokenScanner() {}
+
+    public static void scan(CharSequence text, EmojiRegistry registry, Callback callback) {
+        scan(text, 0, text.length(), registry, callback);
+    }
+
+    /**
+     * 扫描text[start, end)，按顺序回调普通文本片段和emoji标记
+     */
+    public static void scan(CharSequence text, int start, int end, EmojiRegistry registry, Callback callback) {
+        int textStart = start;
+        int i = start;
+        while (i < end) {
+            if (text.charAt(i) != '[') {
+                i++;
+                continue;
+            }
+
+            int nameStart = i + 1;
+            int j = nameStart;
+            int hash = 0;
+            char c = 0;
+            while (j < end && isEmojiNameChar(c = text.charAt(j))) {
+                hash = 31 * hash + c;
+                j++;
+            }
+
+            if (j < end && c == ']' && j > nameStart) {
+                if (i > textStart) {
+                    callback.onText(text, textStart, i);
+                }
+                int id = registry != null ? registry.getId(text, nameStart, j, hash) : EmojiRegistry.NO_EMOJI;
+                callback.onEmoji(text, i, j + 1, id);
+                i = j + 1;
+                textStart = i;
+            } else {
+                // 不是完整标记，从中断字符处继续扫描（该字符可能是新的'['）
+                i = j;
+            }
+        }
+        if (end > textStart) {
+            callback.onText(text, textStart, end);
+        }
+    }
+
+    /**
+     * 去掉所有[name]标记后的纯文本，追加到out中
+     */
+    public static void appendPlainText(CharSequence text, StringBuilder out) {
+        int textStart = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (text.charAt(i) != '[') {
+                i++;
+                continue;
+            }
+            int j = i + 1;
+            while (j < length && isEmojiNameChar(text.charAt(j))) {
+                j++;
+            }
+            if (j < length && text.charAt(j) == ']' && j > i + 1) {
+                out.append(text, textStart, i);
+                i = j + 1;
+                textStart = i;
+            } else {
+                i = j;
+            }
+        }
+        out.append(text, textStart, length);
+    }
+
+    public static String getPlainText(CharSequence text) {
+        StringBuilder out = new StringBuilder(text.length());
+        appendPlainText(text, out);
+        return out.toString();
+    }
+
+    public static boolean isEmojiNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
@@ -0,0 +1,202 @@
+package com.reactnativeemojichatinput;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import pl.droidsonroids.gif.GifDecoder;
+
+/**
+ * 同一张动图在同一尺寸下共享的帧序列。
+ *
+ * 自身不调度任何定时器，由EmojiAnimationClock在每个vsync统一推进，所有引用它的span绘制同一帧位图。
+ * 帧数据来自FrameSource：首次加载时由GifDecoder或WebpFrameSource解码（帧数据不大时一次展开到内存），
+ * 之后从EmojiFrameDiskCache映射的帧文件读取。
+ */
+public class AnimatedEmojiFrames extends Drawable {
+    // 过短的帧间隔按浏览器的惯例处理为100ms
+    private static final int MIN_FRAME_DURATION_MS = 20;
+    private static final int DEFAULT_FRAME_DURATION_MS = 100;
+
+    /**
+     * 按帧序号读取像素的帧序列来源
+     */
+    interface FrameSource {
+        int getWidth();
+
+        int getHeight();
+
+        int getFrameCount();
+
+        int getFrameDuration(int index);
+
+        /**
+         * 将第index帧写入尺寸与来源一致的ARGB_8888位图
+         */
+        void readFrame(int index, Bitmap target);
+
+        /**
+         * 来源额外占用的堆内存，不包含帧缓冲
+         */
+        long getByteCount();
+
+        void recycle();
+    }
+
+    private final FrameSource source;
+    private final Bitmap frameBuffer;
+    private final int frameCount;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private int frameIndex = 0;
+    private long nextFrameTimeMs = -1;
+    private int lastTick = -1;
+    private boolean changedInLastTick = false;
+    private boolean recycled = false;
+
+    public AnimatedEmojiFrames(GifDecoder decoder) {
+        this(new GifFrameSource(decoder));
+    }
+
+    AnimatedEmojiFrames(FrameSource source) {
+        this.source = source;
+        this.frameCount = source.getFrameCount();
+        this.frameBuffer = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+        source.readFrame(0, frameBuffer);
+    }
+
+    public boolean isAnimated() {
+        return frameCount > 1;
+    }
+
+    /**
+     * 推进到当前时间应显示的帧，同一tick内多次调用只推进一次。minIntervalMs用于低功耗时限制帧率。
+     * 返回本tick内帧是否发生变化
+     */
+    boolean advance(long nowMs, int tick, int minIntervalMs) {
+        if (tick == lastTick) {
+            return changedInLastTick;
+        }
+        lastTick = tick;
+        changedInLastTick = false;
+        if (recycled || frameCount <= 1) {
+            return false;
+        }
+        if (nextFrameTimeMs < 0) {
+            nextFrameTimeMs = nowMs + Math.max(minIntervalMs, getFrameDuration(frameIndex));
+            return false;
+        }
+        if (nowMs < nextFrameTimeMs) {
+            return false;
+        }
+        frameIndex = (frameIndex + 1) % frameCount;
+        source.readFrame(frameIndex, frameBuffer);
+        // 掉帧时不追赶，从当前时间重新计算下一帧
+        nextFrameTimeMs = nowMs + Math.max(minIntervalMs, getFrameDuration(frameIndex));
+        changedInLastTick = true;
+        return true;
+    }
+
+    long getNextFrameTimeMs() {
+        return nextFrameTimeMs;
+    }
+
+    int getFrameIndex() {
+        return frameIndex;
+    }
+
+    private int getFrameDuration(int index) {
+        int duration = source.getFrameDuration(index);
+        return duration < MIN_FRAME_DURATION_MS ? DEFAULT_FRAME_DURATION_MS : duration;
+    }
+
+    int getByteCount() {
+        return frameBuffer.getAllocationByteCount() + (int) source.getByteCount();
+    }
+
+    void recycle() {
+        if (recycled) return;
+        recycled = true;
+        source.recycle();
+        frameBuffer.recycle();
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        if (recycled) return;
+        canvas.drawBitmap(frameBuffer, null, getBounds(), paint);
+        if (frameCount > 1) {
+            // 首次出现在屏幕上时唤醒时钟
+            EmojiAnimationClock.getInstance().ensureRunning();
+        }
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        paint.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {}
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return frameBuffer.getWidth();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return frameBuffer.getHeight();
+    }
+
+    static final class GifFrameSource implements FrameSource {
+        private final GifDecoder decoder;
+
+        GifFrameSource(GifDecoder decoder) {
+            this.decoder = decoder;
+        }
+
+        @Override
+        public int getWidth() {
+            return decoder.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return decoder.getHeight();
+        }
+
+        @Override
+        public int getFrameCount() {
+            return decoder.getNumberOfFrames();
+        }
+
+        @Override
+        public int getFrameDuration(int index) {
+            return decoder.getFrameDuration(index);
+        }
+
+        @Override
+        public void readFrame(int index, Bitmap target) {
+            decoder.seekToFrame(index, target);
+        }
+
+        @Override
+        public long getByteCount() {
+            return decoder.getAllocationByteCount();
+        }
+
+        @Override
+        public void recycle() {
+            decoder.recycle();
+        }
+    }
+}
@@ -3,25 +3,46 @@ package com.reactnativeemojichatinput;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
+import android.text.Spanned;
 import android.text.style.ReplacementSpan;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.CustomTarget;
-import com.bumptech.glide.request.transition.Transition;
-import pl.droidsonroids.gif.GifDrawable;
-import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AnimatedEmojiSpan extends ReplacementSpan {
+    // 图集绘制只发生在主线程，所有span共用
+    private static final Paint ATLAS_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private static final Rect ATLAS_DST = new Rect();
+    // 图片加载完成前在emoji位置绘制的占位
+    private static final Paint PLACEHOLDER_PAINT = new Paint(Paint.ANTI_ALIAS_FLAG);
+    static {
+        PLACEHOLDER_PAINT.setColor(0x1F000000);
+    }
+    // resolveAtlasSprite的结果：图集加载中、在图集中、不在图集中
+    private static final int ATLAS_PENDING = 0;
+    private static final int ATLAS_SPRITE = 1;
+    private static final int ATLAS_NONE = 2;
+    // 进程内创建过的span总数，供性能测试统计每次操作新建的span，span可能在后台线程创建
+    private static final AtomicLong createdCount = new AtomicLong();
+
     private Context context;
     private String emojiName;
     private String imagePath;
     private int width;
     private int height;
-    private Drawable drawable;
-    private boolean isLoaded = false;
-    private boolean isAnimated = false;
+    private volatile EmojiDrawableCache.Entry cacheEntry;
+    // 持有该span的宿主数量（view和消息缓存），归零时才释放共享drawable
+    private int holderCount = 0;
+    // 静态emoji在图集中的区域，首次测量或绘制时解析（可能在图集中的图片要等图集加载完成），null表示不在图集中
+    @Nullable
+    private volatile Rect atlasSprite;
+    private volatile boolean atlasResolved = false;
+    // 最近一次字号和字体下计算出的尺寸，测量可能在后台线程进行，整体替换保证一致
+    @Nullable
+    private volatile Geometry geometry;
 
     public AnimatedEmojiSpan(Context context, String emojiName, String imagePath, int width, int height) {
         this.context = context;
@@ -29,133 +50,173 @@ public class AnimatedEmojiSpan extends ReplacementSpan {
         this.imagePath = imagePath;
         this.width = width;
         this.height = height;
-        loadImage();
+        createdCount.incrementAndGet();
+    }
+
+    static long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    /**
+     * 按实际绘制尺寸从共享缓存中获取drawable，尺寸变化时切换到对应的缓存条目
+     */
+    private void ensureDrawable(int targetWidth, int targetHeight) {
+        EmojiDrawableCache.Entry entry = cacheEntry;
+        if (entry != null && entry.getWidth() == targetWidth && entry.getHeight() == targetHeight) {
+            return;
+        }
+        EmojiDrawableCache cache = EmojiDrawableCache.getInstance();
+        cacheEntry = cache.acquire(context, imagePath, targetWidth, targetHeight);
+        cache.release(entry);
     }
 
-    private void loadImage() {
-        try {
-            // 检查文件扩展名以确定是否为动画格式
-            String extension = getFileExtension(imagePath).toLowerCase();
-            
-            if (extension.equals("gif") || extension.equals("webp")) {
-                // 尝试加载动画图片
-                loadAnimatedImage();
+    /**
+     * 图集中有这张图片时直接从图集绘制，不再单独加载drawable。
+     * 动图和索引中没有的图片立即返回ATLAS_NONE；只有可能在图集中的静态图片在图集解码期间返回ATLAS_PENDING
+     * 且不记录结果，此时既不从图集绘制也不单独加载
+     */
+    private int resolveAtlasSprite() {
+        if (!atlasResolved) {
+            EmojiAtlas atlas = EmojiAtlas.getInstance(context);
+            if (!atlas.mayContain(imagePath)) {
+                atlasSprite = null;
+            } else if (!atlas.isLoaded()) {
+                return ATLAS_PENDING;
             } else {
-                // 加载静态图片
-                loadStaticImage();
+                atlasSprite = atlas.getSprite(imagePath);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            loadDefaultImage();
+            atlasResolved = true;
         }
+        return atlasSprite != null ? ATLAS_SPRITE : ATLAS_NONE;
     }
-    
-    private void loadAnimatedImage() {
-        try {
-            String assetPath = "emoji/" + imagePath;
-            GifDrawable gifDrawable = new GifDrawable(context.getAssets(), assetPath);
-            gifDrawable.setBounds(0, 0, width, height);
-            this.drawable = gifDrawable;
-            this.isLoaded = true;
-            this.isAnimated = true;
-        } catch (IOException e) {
-            // 如果GIF加载失败，尝试用Glide加载
-            loadStaticImage();
+
+    /**
+     * 声明一个新的持有者，同一个span可能同时出现在多个view和消息缓存中
+     */
+    public synchronized void retain() {
+        holderCount++;
+    }
+
+    /**
+     * 持有者释放span，span从文本中移除或宿主view销毁时调用；没有持有者时释放对共享drawable的引用，
+     * 之后再次绘制会重新获取
+     */
+    public void release() {
+        synchronized (this) {
+            if (holderCount > 0) {
+                holderCount--;
+            }
+            if (holderCount > 0) return;
         }
+        EmojiDrawableCache.Entry entry = cacheEntry;
+        cacheEntry = null;
+        EmojiDrawableCache.getInstance().release(entry);
     }
-    
-    private void loadStaticImage() {
-        Glide.with(context)
-            .asDrawable()
-            .load("file:///android_asset/emoji/" + imagePath)
-            .into(new CustomTarget<Drawable>() {
-                @Override
-                public void onResourceReady(@NonNull Drawable resource, @Nullable Transition<? super Drawable> transition) {
-                    resource.setBounds(0, 0, width, height);
-                    drawable = resource;
-                    isLoaded = true;
-                    isAnimated = false;
-                }
-
-                @Override
-                public void onLoadCleared(@Nullable Drawable placeholder) {
-                    // 清理资源
-                }
-            });
+
+    static void retainAll(@Nullable CharSequence text) {
+        if (!(text instanceof Spanned)) return;
+        Spanned spanned = (Spanned) text;
+        for (AnimatedEmojiSpan span : spanned.getSpans(0, spanned.length(), AnimatedEmojiSpan.class)) {
+            span.retain();
+        }
     }
-    
-    private void loadDefaultImage() {
-        // 创建默认的emoji图片
-        // 这里可以创建一个简单的占位符
-        isLoaded = true;
-        isAnimated = false;
+
+    static void releaseAll(@Nullable CharSequence text) {
+        if (!(text instanceof Spanned)) return;
+        Spanned spanned = (Spanned) text;
+        for (AnimatedEmojiSpan span : spanned.getSpans(0, spanned.length(), AnimatedEmojiSpan.class)) {
+            span.release();
+        }
     }
-    
-    private String getFileExtension(String fileName) {
-        int lastDotIndex = fileName.lastIndexOf('.');
-        if (lastDotIndex > 0 && lastDotIndex < fileName.length() - 1) {
-            return fileName.substring(lastDotIndex + 1);
+
+    @Nullable
+    EmojiDrawableCache.Entry getCacheEntry() {
+        return cacheEntry;
+    }
+
+    @Nullable
+    private Drawable getDrawable() {
+        EmojiDrawableCache.Entry entry = cacheEntry;
+        return entry != null ? entry.getDrawable() : null;
+    }
+
+    /**
+     * 按字号和字体取缓存的尺寸，只有二者变化时才重新读取字体度量
+     */
+    private Geometry getGeometry(Paint paint) {
+        Geometry geometry = this.geometry;
+        if (geometry == null || !geometry.matches(paint)) {
+            geometry = new Geometry(paint, width, height);
+            this.geometry = geometry;
         }
-        return "";
+        return geometry;
     }
 
     @Override
     public int getSize(@NonNull Paint paint, CharSequence text, int start, int end, @Nullable Paint.FontMetricsInt fm) {
         if (fm != null) {
-            // 获取字体度量信息
-            Paint.FontMetricsInt paintFm = paint.getFontMetricsInt();
-            
-            // 计算字体的基线信息
-            int fontHeight = paintFm.descent - paintFm.ascent;
-            int baseline = -paintFm.ascent;
-            
-            // 确保emoji尺寸与字体高度成比例
-            int adjustedHeight = (int) (fontHeight * 0.9f);
-            int adjustedWidth = (int) (width * ((float) adjustedHeight / height));
-            
-            // 更新drawable的bounds
-            if (drawable != null) {
-                drawable.setBounds(0, 0, adjustedWidth, adjustedHeight);
+            Geometry geometry = getGeometry(paint);
+
+            // 不在图集中的图片按实际尺寸获取共享drawable
+            if (resolveAtlasSprite() == ATLAS_NONE) {
+                ensureDrawable(geometry.width, geometry.height);
             }
-            
-            // 计算垂直居中对齐
-            int emojiTop = baseline - adjustedHeight / 2 - (paintFm.descent - paintFm.ascent) / 4;
-            int emojiBottom = emojiTop + adjustedHeight;
-            
+
             // 设置字体度量以确保行高正确
-            fm.ascent = Math.min(paintFm.ascent, emojiTop);
-            fm.descent = Math.max(paintFm.descent, emojiBottom);
+            fm.ascent = geometry.ascent;
+            fm.descent = geometry.descent;
             fm.top = fm.ascent;
             fm.bottom = fm.descent;
-            
-            return adjustedWidth;
+
+            return geometry.width;
         }
         return width;
     }
 
     @Override
     public void draw(@NonNull Canvas canvas, CharSequence text, int start, int end, float x, int top, int y, int bottom, @NonNull Paint paint) {
-        if (drawable != null && isLoaded) {
-            canvas.save();
-            
-            // 获取字体度量信息
-            Paint.FontMetricsInt fm = paint.getFontMetricsInt();
-            int fontHeight = fm.descent - fm.ascent;
-            int baseline = y;
-            
-            // 计算emoji的实际尺寸
-            int adjustedHeight = (int) (fontHeight * 0.9f);
-            int adjustedWidth = (int) (width * ((float) adjustedHeight / height));
-            
-            // 计算垂直居中位置，确保与文字基线对齐
-            int drawY = baseline - adjustedHeight / 2 - (fm.descent - fm.ascent) / 4;
-            
-            // 更新drawable bounds并绘制
-            drawable.setBounds(0, 0, adjustedWidth, adjustedHeight);
-            canvas.translate(x, drawY);
-            drawable.draw(canvas);
-            canvas.restore();
+        // 绘制路径不分配对象：尺寸来自缓存，不再save/restore，只在尺寸变化时更新bounds
+        Geometry geometry = getGeometry(paint);
+        int drawY = y + geometry.offsetY;
+
+        int atlasState = resolveAtlasSprite();
+        if (atlasState == ATLAS_SPRITE) {
+            // 从共享图集中按区域绘制
+            int left = (int) x;
+            ATLAS_DST.set(left, drawY, left + geometry.width, drawY + geometry.height);
+            canvas.drawBitmap(EmojiAtlas.getInstance(context).getBitmap(), atlasSprite, ATLAS_DST, ATLAS_PAINT);
+            return;
+        }
+        if (atlasState == ATLAS_PENDING) {
+            // 图集加载完成后EmojiAnimationClock会重绘宿主
+            drawPlaceholder(canvas, x, drawY, geometry);
+            return;
         }
+
+        // 宿主view重新attach后span可能已释放drawable，这里按需重新获取
+        ensureDrawable(geometry.width, geometry.height);
+        EmojiDrawableCache.Entry entry = cacheEntry;
+        Drawable drawable = entry != null ? entry.getDrawable() : null;
+        if (drawable == null) {
+            if (entry != null && entry.isLoading()) {
+                // 已经出现在屏幕上，优先于只参与测量的emoji加载；尺寸固定，加载完成后只需重绘
+                EmojiImageLoader.getInstance().raisePriority(entry, EmojiImageLoader.PRIORITY_VISIBLE);
+                drawPlaceholder(canvas, x, drawY, geometry);
+            }
+            return;
+        }
+        Rect bounds = drawable.getBounds();
+        if (bounds.left != 0 || bounds.top != 0 || bounds.right != geometry.width || bounds.bottom != geometry.height) {
+            drawable.setBounds(0, 0, geometry.width, geometry.height);
+        }
+        canvas.translate(x, drawY);
+        drawable.draw(canvas);
+        canvas.translate(-x, -drawY);
+    }
+
+    private static void drawPlaceholder(Canvas canvas, float x, int top, Geometry geometry) {
+        float radius = geometry.height / 4f;
+        canvas.drawRoundRect(x, top, x + geometry.width, top + geometry.height, radius, radius, PLACEHOLDER_PAINT);
     }
 
     public String getEmojiName() {
@@ -163,31 +224,54 @@ public class AnimatedEmojiSpan extends ReplacementSpan {
     }
     
     public boolean isAnimated() {
-        return isAnimated;
+        EmojiDrawableCache.Entry entry = cacheEntry;
+        return entry != null && entry.isAnimated();
     }
 
-    public void startAnimation() {
-        if (drawable instanceof GifDrawable) {
-            ((GifDrawable) drawable).start();
-        }
+    /**
+     * 动图的共享帧序列，由EmojiAnimationClock统一推进；静态图片或尚未加载时返回null
+     */
+    @Nullable
+    AnimatedEmojiFrames getAnimatedFrames() {
+        Drawable drawable = getDrawable();
+        return drawable instanceof AnimatedEmojiFrames ? (AnimatedEmojiFrames) drawable : null;
     }
 
-    public void stopAnimation() {
-        if (drawable instanceof GifDrawable) {
-            ((GifDrawable) drawable).stop();
-        }
-    }
-    
-    public void pauseAnimation() {
-        if (drawable instanceof GifDrawable) {
-            ((GifDrawable) drawable).pause();
+    /**
+     * 某个字号和字体下emoji的绘制尺寸和相对基线的位置，创建后不可变
+     */
+    static final class Geometry {
+        final float textSize;
+        @Nullable
+        final Typeface typeface;
+        final int width;
+        final int height;
+        // 测量时返回给布局的行高
+        final int ascent;
+        final int descent;
+        // emoji顶部相对基线的偏移
+        final int offsetY;
+
+        Geometry(Paint paint, int intrinsicWidth, int intrinsicHeight) {
+            this.textSize = paint.getTextSize();
+            this.typeface = paint.getTypeface();
+            Paint.FontMetricsInt fm = new Paint.FontMetricsInt();
+            paint.getFontMetricsInt(fm);
+
+            // 确保emoji尺寸与字体高度成比例
+            int fontHeight = fm.descent - fm.ascent;
+            this.height = (int) (fontHeight * 0.9f);
+            this.width = (int) (intrinsicWidth * ((float) height / intrinsicHeight));
+
+            // 计算垂直居中位置，确保与文字基线对齐
+            this.offsetY = -height / 2 - fontHeight / 4;
+            int emojiTop = -fm.ascent - height / 2 - fontHeight / 4;
+            this.ascent = Math.min(fm.ascent, emojiTop);
+            this.descent = Math.max(fm.descent, emojiTop + height);
         }
-    }
-    
-    public void resumeAnimation() {
-        if (drawable instanceof GifDrawable) {
-            ((GifDrawable) drawable).start();
+
+        boolean matches(Paint paint) {
+            return textSize == paint.getTextSize() && typeface == paint.getTypeface();
         }
     }
 }
-
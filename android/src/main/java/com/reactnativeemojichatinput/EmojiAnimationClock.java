@@ -0,0 +1,337 @@
+package com.reactnativeemojichatinput;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.PowerManager;
+import android.text.Layout;
+import android.text.Spanned;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.TextView;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+
+/**
+ * 所有动图emoji共用的动画时钟。
+ *
+ * 由Choreographer在每个vsync回调一次，统一推进已注册宿主view中所有动图的帧，同一张动图的帧序列
+ * 在一个tick内只推进一次；帧发生变化时只重绘对应span所在的行。每个宿主按自己的EmojiAnimationPolicy
+ * 跳过可见区域外的emoji、在省电模式或过热时限制帧率，并限制同一屏幕内同时播放的数量。
+ * 下一帧还没到时按最早的帧时间延迟回调，没有需要推进的动图时停止回调。只能在主线程使用。
+ */
+public final class EmojiAnimationClock implements Choreographer.FrameCallback, ViewTreeObserver.OnScrollChangedListener {
+    private static final AnimatedEmojiSpan[] NO_SPANS = new AnimatedEmojiSpan[0];
+    // 提前半个vsync唤醒，保证在帧时间到达的那一帧完成推进
+    private static final int FRAME_SLACK_MS = 8;
+    // 所有动图都在可见区域外时，低频检查是否被重新滚入（滚动事件会立即唤醒）
+    private static final int OFFSCREEN_POLL_MS = 500;
+
+    private static EmojiAnimationClock instance;
+
+    private final ArrayList<HostState> hosts = new ArrayList<>();
+    private final Rect visibleRect = new Rect();
+    // 当前tick内每个根view已经在播放的动图数量
+    private final ArrayList<View> tickRoots = new ArrayList<>();
+    private int[] tickRootCounts = new int[4];
+    private boolean frameScheduled = false;
+    private int tick = 0;
+    private boolean powerStateInitialized = false;
+    private boolean powerSaveMode = false;
+    private boolean thermalThrottled = false;
+
+    public static EmojiAnimationClock getInstance() {
+        if (instance == null) {
+            instance = new EmojiAnimationClock();
+        }
+        return instance;
+    }
+
+    private EmojiAnimationClock() {}
+
+    /**
+     * 宿主view可见时注册，之后其中的动图按policy随时钟播放
+     */
+    public void register(TextView host, EmojiAnimationPolicy policy) {
+        initPowerState(host.getContext());
+        int index = indexOf(host);
+        if (index < 0) {
+            HostState state = new HostState(host, policy);
+            // 外层ScrollView/FlatList滚动时立即重新计算可见的emoji
+            ViewTreeObserver observer = host.getViewTreeObserver();
+            if (observer != null && observer.isAlive()) {
+                observer.addOnScrollChangedListener(this);
+                state.observer = observer;
+            }
+            hosts.add(state);
+        } else {
+            hosts.get(index).policy = policy;
+        }
+        wakeUp();
+    }
+
+    /**
+     * 宿主view不可见或销毁时注销，其中的动图停在当前帧
+     */
+    public void unregister(TextView host) {
+        int index = indexOf(host);
+        if (index < 0) return;
+        HostState state = hosts.remove(index);
+        if (state.observer != null && state.observer.isAlive()) {
+            state.observer.removeOnScrollChangedListener(this);
+        }
+        if (hosts.isEmpty()) {
+            // 不会再有下一帧更新这个数量
+            EmojiPerfStats.getInstance().setAnimatedLive(0);
+        }
+    }
+
+    /**
+     * 宿主文本或span发生变化后调用，下一个tick重新收集span
+     */
+    public void onHostTextChanged(TextView host) {
+        int index = indexOf(host);
+        if (index >= 0) {
+            hosts.get(index).spans = null;
+            wakeUp();
+        }
+    }
+
+    /**
+     * 图片异步加载完成后调用，重绘已注册宿主中使用该缓存条目的span所在的行
+     */
+    void invalidateEntry(EmojiDrawableCache.Entry entry) {
+        for (int i = 0; i < hosts.size(); i++) {
+            HostState state = hosts.get(i);
+            CharSequence text = state.view.getText();
+            if (!(text instanceof Spanned)) continue;
+            Spanned spanned = (Spanned) text;
+            Layout layout = state.view.getLayout();
+            for (AnimatedEmojiSpan span : state.getSpans(spanned)) {
+                if (span.getCacheEntry() == entry) {
+                    invalidateSpan(state.view, layout, spanned, span);
+                }
+            }
+        }
+        ensureRunning();
+    }
+
+    /**
+     * 静态图集在后台加载完成后调用，重绘所有已注册的宿主，加载期间绘制的占位换成emoji
+     */
+    void invalidateHosts() {
+        for (int i = 0; i < hosts.size(); i++) {
+            hosts.get(i).view.invalidate();
+        }
+    }
+
+    @Override
+    public void onScrollChanged() {
+        wakeUp();
+    }
+
+    /**
+     * 没有待执行的回调时安排下一帧，已有延迟回调时保持不变
+     */
+    void ensureRunning() {
+        if (frameScheduled || hosts.isEmpty()) return;
+        scheduleFrame(0);
+    }
+
+    /**
+     * 取消已安排的延迟回调并在下一个vsync立即执行，可见区域、文本或策略变化时调用
+     */
+    void wakeUp() {
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        ensureRunning();
+    }
+
+    private void scheduleFrame(long delayMs) {
+        frameScheduled = true;
+        if (delayMs > 0) {
+            Choreographer.getInstance().postFrameCallbackDelayed(this, delayMs);
+        } else {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        EmojiPerfStats stats = EmojiPerfStats.getInstance();
+        long startNanos = stats.begin("EmojiAnimationClock.doFrame");
+        try {
+            advanceFrames(frameTimeNanos);
+        } finally {
+            stats.end(EmojiPerfStats.ANIMATION_FRAME, startNanos);
+        }
+    }
+
+    private void advanceFrames(long frameTimeNanos) {
+        frameScheduled = false;
+        long nowMs = frameTimeNanos / 1000000L;
+        tick++;
+        tickRoots.clear();
+        boolean lowPower = powerSaveMode || thermalThrottled;
+        boolean hasAnimated = false;
+        long nextFrameTimeMs = Long.MAX_VALUE;
+        int live = 0;
+
+        for (int i = 0; i < hosts.size(); i++) {
+            HostState state = hosts.get(i);
+            TextView view = state.view;
+            CharSequence text = view.getText();
+            if (!(text instanceof Spanned)) continue;
+            Spanned spanned = (Spanned) text;
+            AnimatedEmojiSpan[] spans = state.getSpans(spanned);
+            if (spans.length == 0) continue;
+
+            EmojiAnimationPolicy policy = state.policy;
+            boolean checkVisibility = policy.pauseWhenOffscreen;
+            boolean hostVisible = !checkVisibility || view.getLocalVisibleRect(visibleRect);
+            int minIntervalMs = policy.getMinFrameIntervalMs(lowPower);
+            int rootIndex = hostVisible && policy.maxAnimatedEmojis > 0 ? rootIndexOf(view.getRootView()) : -1;
+            Layout layout = view.getLayout();
+
+            for (AnimatedEmojiSpan span : spans) {
+                AnimatedEmojiFrames frames = span.getAnimatedFrames();
+                if (frames == null || !frames.isAnimated()) continue;
+                hasAnimated = true;
+                if (!hostVisible) continue;
+                if (checkVisibility && !isSpanVisible(view, layout, spanned, span, visibleRect)) continue;
+                if (rootIndex >= 0) {
+                    if (tickRootCounts[rootIndex] >= policy.maxAnimatedEmojis) continue;
+                    tickRootCounts[rootIndex]++;
+                }
+                live++;
+                if (frames.advance(nowMs, tick, minIntervalMs)) {
+                    invalidateSpan(view, layout, spanned, span);
+                }
+                nextFrameTimeMs = Math.min(nextFrameTimeMs, frames.getNextFrameTimeMs());
+            }
+        }
+
+        EmojiPerfStats.getInstance().setAnimatedLive(live);
+
+        if (nextFrameTimeMs != Long.MAX_VALUE) {
+            scheduleFrame(Math.max(0, nextFrameTimeMs - nowMs - FRAME_SLACK_MS));
+        } else if (hasAnimated) {
+            scheduleFrame(OFFSCREEN_POLL_MS);
+        }
+    }
+
+    private int rootIndexOf(View root) {
+        for (int i = 0; i < tickRoots.size(); i++) {
+            if (tickRoots.get(i) == root) return i;
+        }
+        int index = tickRoots.size();
+        tickRoots.add(root);
+        if (index >= tickRootCounts.length) {
+            int[] counts = new int[tickRootCounts.length * 2];
+            System.arraycopy(tickRootCounts, 0, counts, 0, tickRootCounts.length);
+            tickRootCounts = counts;
+        }
+        tickRootCounts[index] = 0;
+        return index;
+    }
+
+    /**
+     * span所在行与可见区域相交时才认为可见；visible为getLocalVisibleRect的结果，与布局行同处view内容坐标系
+     */
+    private static boolean isSpanVisible(TextView view, @Nullable Layout layout, Spanned text,
+                                         AnimatedEmojiSpan span, Rect visible) {
+        int start = text.getSpanStart(span);
+        if (layout == null || start < 0) return true;
+        int line = layout.getLineForOffset(start);
+        int top = view.getTotalPaddingTop() + layout.getLineTop(line);
+        int bottom = view.getTotalPaddingTop() + layout.getLineBottom(line);
+        return bottom > visible.top && top < visible.bottom;
+    }
+
+    /**
+     * 只重绘span所在的行，坐标换算到view内容坐标系（包含padding和滚动偏移）
+     */
+    private static void invalidateSpan(TextView view, @Nullable Layout layout, Spanned text, AnimatedEmojiSpan span) {
+        int start = text.getSpanStart(span);
+        if (layout == null || start < 0) {
+            view.invalidate();
+            return;
+        }
+        int line = layout.getLineForOffset(start);
+        int top = view.getTotalPaddingTop() + layout.getLineTop(line);
+        int bottom = view.getTotalPaddingTop() + layout.getLineBottom(line);
+        int left = view.getScrollX();
+        view.invalidate(left, top, left + view.getWidth(), bottom);
+    }
+
+    /**
+     * 监听省电模式和设备温度，进程内只注册一次
+     */
+    private void initPowerState(Context context) {
+        if (powerStateInitialized) return;
+        powerStateInitialized = true;
+        Context appContext = context.getApplicationContext();
+        PowerManager powerManager = (PowerManager) appContext.getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null) return;
+
+        powerSaveMode = powerManager.isPowerSaveMode();
+        try {
+            appContext.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context receiverContext, Intent intent) {
+                    powerSaveMode = powerManager.isPowerSaveMode();
+                    wakeUp();
+                }
+            }, new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            thermalThrottled = powerManager.getCurrentThermalStatus() >= PowerManager.THERMAL_STATUS_SEVERE;
+            powerManager.addThermalStatusListener(status -> {
+                thermalThrottled = status >= PowerManager.THERMAL_STATUS_SEVERE;
+                wakeUp();
+            });
+        }
+    }
+
+    private int indexOf(TextView host) {
+        for (int i = 0; i < hosts.size(); i++) {
+            if (hosts.get(i).view == host) return i;
+        }
+        return -1;
+    }
+
+    private static final class HostState {
+        final TextView view;
+        EmojiAnimationPolicy policy;
+        @Nullable
+        ViewTreeObserver observer;
+        // 缓存的span列表，避免每帧调用getSpans分配数组；文本变化时置空
+        @Nullable
+        AnimatedEmojiSpan[] spans;
+        @Nullable
+        CharSequence spansSource;
+
+        HostState(TextView view, EmojiAnimationPolicy policy) {
+            this.view = view;
+            this.policy = policy;
+        }
+
+        AnimatedEmojiSpan[] getSpans(Spanned text) {
+            if (spans == null || spansSource != text) {
+                spans = text.getSpans(0, text.length(), AnimatedEmojiSpan.class);
+                if (spans == null) spans = NO_SPANS;
+                spansSource = text;
+            }
+            return spans;
+        }
+    }
+}
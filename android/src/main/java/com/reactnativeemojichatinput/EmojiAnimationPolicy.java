@@ -0,0 +1,38 @@
+package com.reactnativeemojichatinput;
+
+/**
+ * 单个宿主view的动图播放策略，由EmojiAnimationClock在每个tick读取。
+ */
+public class EmojiAnimationPolicy {
+    public static final int DEFAULT_LOW_POWER_FRAME_RATE = 15;
+    public static final int DEFAULT_MAX_ANIMATED_EMOJIS = 32;
+
+    boolean pauseWhenOffscreen = true;
+    int lowPowerFrameRate = DEFAULT_LOW_POWER_FRAME_RATE;
+    int maxAnimatedEmojis = DEFAULT_MAX_ANIMATED_EMOJIS;
+
+    /**
+     * 滚出ScrollView/FlatList可见区域的emoji停在当前帧
+     */
+    public void setPauseWhenOffscreen(boolean pauseWhenOffscreen) {
+        this.pauseWhenOffscreen = pauseWhenOffscreen;
+    }
+
+    /**
+     * 省电模式或设备过热时的最高帧率，传0不限制
+     */
+    public void setLowPowerFrameRate(int frameRate) {
+        this.lowPowerFrameRate = Math.max(0, frameRate);
+    }
+
+    /**
+     * 同一屏幕（同一个根view）内同时播放的动图数量上限，超出的停在当前帧，传0不限制
+     */
+    public void setMaxAnimatedEmojis(int maxAnimatedEmojis) {
+        this.maxAnimatedEmojis = Math.max(0, maxAnimatedEmojis);
+    }
+
+    int getMinFrameIntervalMs(boolean lowPower) {
+        return lowPower && lowPowerFrameRate > 0 ? 1000 / lowPowerFrameRate : 0;
+    }
+}
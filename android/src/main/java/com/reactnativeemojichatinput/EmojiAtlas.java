@@ -0,0 +1,234 @@
+package com.reactnativeemojichatinput;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * 构建时生成的静态emoji精灵图集（android/emoji-atlas.gradle）。
+ *
+ * 按屏幕密度选择一档图集，整张只解码一次，静态emoji通过getSprite拿到在图集中的区域后
+ * 直接drawBitmap(src, dst)绘制，不再为每张图片单独解码和创建drawable。
+ * 索引和图集在首次getInstance时提交到后台线程加载，不阻塞测量和绘制；加载完成前isLoaded返回false，
+ * 完成后通知EmojiAnimationClock重绘已注册的宿主，并执行通过whenLoaded注册的回调。动图和索引中没有的图片由mayContain立即排除，
+ * 不必等图集解码完成。
+ * 没有打包图集或图集中没有对应图片时getSprite返回null，调用方退回EmojiDrawableCache逐张加载。
+ */
+public class EmojiAtlas {
+    static final String ATLAS_DIR = "emoji_atlas";
+    // 与emoji-atlas.gradle中的atlasExtensions一致，其他格式（GIF、WebP）不会进入图集
+    private static final String[] ATLAS_EXTENSIONS = {".png", ".jpg", ".jpeg"};
+
+    private static volatile EmojiAtlas instance;
+
+    private final CountDownLatch loadedLatch = new CountDownLatch(1);
+    // 以下字段由加载线程写入，loaded最后写入，读到loaded为true后其余字段可见
+    @Nullable
+    private volatile Bitmap bitmap;
+    private volatile Map<String, Rect> sprites = Collections.emptyMap();
+    // 索引先于图集解码完成，此后sprites不再变化
+    private volatile boolean indexLoaded = false;
+    private volatile boolean loaded = false;
+    // 加载完成后执行的回调，由this锁保护
+    @Nullable
+    private ArrayList<Runnable> loadCallbacks;
+
+    /**
+     * 返回进程内唯一的图集，首次调用时开始在后台加载，模块初始化时即调用以便首条消息显示前加载完成
+     */
+    public static EmojiAtlas getInstance(Context context) {
+        if (instance == null) {
+            synchronized (EmojiAtlas.class) {
+                if (instance == null) {
+                    EmojiAtlas atlas = new EmojiAtlas();
+                    atlas.startLoading(context.getApplicationContext());
+                    instance = atlas;
+                }
+            }
+        }
+        return instance;
+    }
+
+    private EmojiAtlas() {}
+
+    /**
+     * 索引和图集是否已经加载完成（包括没有打包图集的情况）
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 加载完成后在加载线程执行回调，已经完成时立即在当前线程执行
+     */
+    public void whenLoaded(Runnable callback) {
+        synchronized (this) {
+            if (!loaded) {
+                if (loadCallbacks == null) {
+                    loadCallbacks = new ArrayList<>(1);
+                }
+                loadCallbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * 在后台线程等待加载完成，超时返回false
+     */
+    public boolean awaitLoaded(long timeoutMs) {
+        try {
+            return loadedLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 图片是否可能在图集中。动图格式始终返回false；索引加载完成后，索引中没有的图片也返回false。
+     * 返回false时调用方可以立即逐张加载，不必等待图集
+     */
+    public boolean mayContain(String imagePath) {
+        if (!isAtlasFormat(imagePath)) return false;
+        return !indexLoaded || sprites.containsKey(imagePath);
+    }
+
+    private static boolean isAtlasFormat(String imagePath) {
+        for (String extension : ATLAS_EXTENSIONS) {
+            if (imagePath.regionMatches(true, imagePath.length() - extension.length(), extension, 0, extension.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 返回图片在图集中的像素区域，图集尚未加载完成、不可用或图片不在图集中（如动图）时返回null
+     */
+    @Nullable
+    public Rect getSprite(String imagePath) {
+        return loaded && bitmap != null ? sprites.get(imagePath) : null;
+    }
+
+    @Nullable
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    public int getByteCount() {
+        Bitmap bitmap = this.bitmap;
+        return bitmap != null ? bitmap.getAllocationByteCount() : 0;
+    }
+
+    private void startLoading(Context context) {
+        Thread thread = new Thread(() -> {
+            load(context);
+            ArrayList<Runnable> callbacks;
+            synchronized (this) {
+                loaded = true;
+                callbacks = loadCallbacks;
+                loadCallbacks = null;
+            }
+            loadedLatch.countDown();
+            // 加载期间绘制的是占位，切回主线程重绘；没有图集时同样需要重绘，让span退回逐张加载
+            new Handler(Looper.getMainLooper()).post(() -> EmojiAnimationClock.getInstance().invalidateHosts());
+            if (callbacks != null) {
+                for (Runnable callback : callbacks) {
+                    callback.run();
+                }
+            }
+        }, "emoji-atlas");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
+
+    private void load(Context context) {
+        try {
+            JSONObject index = new JSONObject(readAsset(context, ATLAS_DIR + "/index.json"));
+            float density = context.getResources().getDisplayMetrics().density;
+            JSONObject bucket = selectBucket(index.getJSONArray("buckets"), density);
+            if (bucket == null) return;
+
+            int cellSize = Math.round(index.getInt("cellSize") * (float) bucket.getDouble("scale"));
+            int padding = index.optInt("padding", 0);
+            int columns = index.getInt("columns");
+            int stride = cellSize + padding * 2;
+
+            Map<String, Rect> sprites = new HashMap<>();
+            JSONObject spriteIndex = index.getJSONObject("sprites");
+            JSONArray names = spriteIndex.names();
+            if (names != null) {
+                for (int i = 0; i < names.length(); i++) {
+                    String name = names.getString(i);
+                    int position = spriteIndex.getInt(name);
+                    int left = (position % columns) * stride + padding;
+                    int top = (position / columns) * stride + padding;
+                    sprites.put(name, new Rect(left, top, left + cellSize, top + cellSize));
+                }
+            }
+
+            // 先公开索引，动图和不在图集中的图片不必等待解码
+            this.sprites = sprites;
+            indexLoaded = true;
+
+            Bitmap bitmap;
+            try (InputStream input = context.getAssets().open(ATLAS_DIR + "/" + bucket.getString("file"))) {
+                bitmap = BitmapFactory.decodeStream(input);
+            }
+            this.bitmap = bitmap;
+        } catch (IOException e) {
+            // 未打包图集，全部退回逐张加载
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 选择不小于屏幕密度的最小一档，都小于屏幕密度时使用最大的一档
+     */
+    @Nullable
+    private static JSONObject selectBucket(JSONArray buckets, float density) throws Exception {
+        JSONObject best = null;
+        JSONObject largest = null;
+        for (int i = 0; i < buckets.length(); i++) {
+            JSONObject bucket = buckets.getJSONObject(i);
+            double scale = bucket.getDouble("scale");
+            if (largest == null || scale > largest.getDouble("scale")) {
+                largest = bucket;
+            }
+            if (scale >= density && (best == null || scale < best.getDouble("scale"))) {
+                best = bucket;
+            }
+        }
+        return best != null ? best : largest;
+    }
+
+    private static String readAsset(Context context, String path) throws IOException {
+        try (InputStream input = context.getAssets().open(path)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        }
+    }
+}
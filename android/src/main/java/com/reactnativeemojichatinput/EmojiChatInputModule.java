@@ -0,0 +1,247 @@
+package com.reactnativeemojichatinput;
+
+import android.text.TextPaint;
+import android.util.SparseArray;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 供JS调用的原生模块，用于配置和查看emoji相关缓存
+ */
+public class EmojiChatInputModule extends ReactContextBaseJavaModule {
+    public static final String NAME = "RNEmojiChatInputModule";
+    public static final String EVENT_PREFETCH_PROGRESS = "EmojiPrefetchProgress";
+    private static final float DEFAULT_PREFETCH_FONT_SIZE = 16;
+
+    // 字体样式到原型画笔的缓存，只在主线程访问
+    private final SparseArray<TextPaint> prototypePaints = new SparseArray<>();
+
+    public EmojiChatInputModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+        // 模块初始化时就开始在后台加载静态图集，首条消息显示前通常已经完成
+        EmojiAtlas.getInstance(reactContext);
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return NAME;
+    }
+
+    @ReactMethod
+    public void setMessageCacheSize(int maxEntries) {
+        EmojiMessageCache.getInstance().setMaxSize(maxEntries);
+    }
+
+    @ReactMethod
+    public void setDrawableCacheSize(int maxSizeBytes) {
+        EmojiDrawableCache.getInstance().setMaxSize(maxSizeBytes);
+    }
+
+    @ReactMethod
+    public void clearCaches() {
+        EmojiMessageCache.getInstance().clear();
+        EmojiDrawableCache.getInstance().trimToSize(0);
+    }
+
+    @ReactMethod
+    public void getCacheStats(Promise promise) {
+        EmojiMessageCache.Stats messageStats = EmojiMessageCache.getInstance().getStats();
+        WritableMap messageCache = Arguments.createMap();
+        messageCache.putDouble("hitCount", messageStats.hitCount);
+        messageCache.putDouble("missCount", messageStats.missCount);
+        messageCache.putDouble("hitRate", messageStats.getHitRate());
+        messageCache.putInt("size", messageStats.size);
+        messageCache.putInt("maxSize", messageStats.maxSize);
+
+        EmojiDrawableCache.Stats drawableStats = EmojiDrawableCache.getInstance().getStats();
+        WritableMap drawableCache = Arguments.createMap();
+        drawableCache.putDouble("hitCount", drawableStats.hitCount);
+        drawableCache.putDouble("missCount", drawableStats.missCount);
+        drawableCache.putDouble("evictionCount", drawableStats.evictionCount);
+        drawableCache.putDouble("hitRate", drawableStats.getHitRate());
+        drawableCache.putInt("activeCount", drawableStats.activeCount);
+        drawableCache.putInt("idleCount", drawableStats.idleCount);
+        drawableCache.putInt("activeSizeBytes", drawableStats.activeSizeBytes);
+        drawableCache.putInt("idleSizeBytes", drawableStats.idleSizeBytes);
+        drawableCache.putInt("maxSizeBytes", drawableStats.maxSizeBytes);
+
+        WritableMap result = Arguments.createMap();
+        result.putMap("messageCache", messageCache);
+        result.putMap("drawableCache", drawableCache);
+        promise.resolve(result);
+    }
+
+    /**
+     * 获取各阶段耗时的直方图（count/meanMs/p50Ms/p90Ms/p99Ms/maxMs）、计数器和当前播放中的动画emoji数量。
+     * 缓存命中数自进程启动起累计，不受resetPerformanceStats影响
+     */
+    @ReactMethod
+    public void getPerformanceStats(Promise promise) {
+        EmojiPerfStats.Snapshot snapshot = EmojiPerfStats.getInstance().snapshot();
+        WritableMap histograms = Arguments.createMap();
+        for (Map.Entry<String, EmojiPerfStats.Histogram.Summary> entry : snapshot.histograms.entrySet()) {
+            EmojiPerfStats.Histogram.Summary summary = entry.getValue();
+            WritableMap histogram = Arguments.createMap();
+            histogram.putDouble("count", summary.count);
+            histogram.putDouble("meanMs", summary.meanMs);
+            histogram.putDouble("p50Ms", summary.p50Ms);
+            histogram.putDouble("p90Ms", summary.p90Ms);
+            histogram.putDouble("p99Ms", summary.p99Ms);
+            histogram.putDouble("maxMs", summary.maxMs);
+            histograms.putMap(entry.getKey(), histogram);
+        }
+
+        WritableMap counters = Arguments.createMap();
+        for (Map.Entry<String, Long> entry : snapshot.counters.entrySet()) {
+            counters.putDouble(entry.getKey(), entry.getValue());
+        }
+        counters.putDouble("spansBuilt", snapshot.spansBuilt);
+        EmojiMessageCache.Stats messageStats = EmojiMessageCache.getInstance().getStats();
+        counters.putDouble("messageCache.hitCount", messageStats.hitCount);
+        counters.putDouble("messageCache.missCount", messageStats.missCount);
+        EmojiDrawableCache.Stats drawableStats = EmojiDrawableCache.getInstance().getStats();
+        counters.putDouble("drawableCache.hitCount", drawableStats.hitCount);
+        counters.putDouble("drawableCache.missCount", drawableStats.missCount);
+
+        WritableMap result = Arguments.createMap();
+        result.putMap("histograms", histograms);
+        result.putMap("counters", counters);
+        result.putInt("animatedLive", snapshot.animatedLive);
+        promise.resolve(result);
+    }
+
+    /**
+     * 清空耗时直方图和计数器，例如在上报一次统计后调用
+     */
+    @ReactMethod
+    public void resetPerformanceStats() {
+        EmojiPerfStats.getInstance().reset();
+    }
+
+    /**
+     * 注册emoji配置，resolve配置id，之后view通过emojiConfigId引用该配置。configId为空时按内容生成
+     */
+    @ReactMethod
+    public void registerEmojiConfig(ReadableMap config, @Nullable String configId, Promise promise) {
+        try {
+            promise.resolve(EmojiConfigStore.getInstance().register(config.toString(), configId));
+        } catch (Exception e) {
+            promise.reject("E_INVALID_CONFIG", e);
+        }
+    }
+
+    /**
+     * 直接从assets加载配置文件并注册，配置不经过JS传递
+     */
+    @ReactMethod
+    public void loadEmojiConfigFromAssets(@Nullable String path, @Nullable String configId, Promise promise) {
+        try {
+            promise.resolve(EmojiConfigStore.getInstance().registerAsset(getReactApplicationContext(), path, configId));
+        } catch (Exception e) {
+            promise.reject("E_INVALID_CONFIG", e);
+        }
+    }
+
+    @ReactMethod
+    public void unregisterEmojiConfig(String configId) {
+        EmojiConfigStore.getInstance().unregister(configId);
+    }
+
+    // NativeEventEmitter要求原生模块提供以下两个方法，事件直接通过RCTDeviceEventEmitter发送
+    @ReactMethod
+    public void addListener(String eventName) {}
+
+    @ReactMethod
+    public void removeListeners(double count) {}
+
+    /**
+     * 在后台预加载已注册配置中的emoji图片，进度通过EmojiPrefetchProgress事件发送，全部完成后resolve
+     */
+    @ReactMethod
+    public void prefetchEmojis(String configId, @Nullable ReadableArray names, @Nullable ReadableArray fontSizes,
+                               @Nullable String fontWeight, double budgetBytes, String requestId, Promise promise) {
+        EmojiRegistry registry = EmojiConfigStore.getInstance().get(configId);
+        if (registry == null) {
+            promise.reject("E_UNKNOWN_CONFIG", "Emoji config " + configId + " is not registered");
+            return;
+        }
+
+        List<String> nameList = new ArrayList<>();
+        if (names != null) {
+            for (int i = 0; i < names.size(); i++) {
+                nameList.add(names.getString(i));
+            }
+        }
+        float[] sizes;
+        if (fontSizes != null && fontSizes.size() > 0) {
+            sizes = new float[fontSizes.size()];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = (float) fontSizes.getDouble(i);
+            }
+        } else {
+            sizes = new float[] {DEFAULT_PREFETCH_FONT_SIZE};
+        }
+
+        ReactApplicationContext context = getReactApplicationContext();
+        int style = EmojiTextViewManager.getTypefaceStyle(fontWeight);
+        // 画笔只能在主线程从view读取，取到后预加载的计划和提交都在后台进行
+        UiThreadUtil.runOnUiThread(() -> startPrefetch(context, registry, nameList, sizes, style, (long) budgetBytes,
+            requestId, promise));
+    }
+
+    /**
+     * 与显示消息的EmojiTextView一致的画笔，按字体样式缓存，只在主线程访问
+     */
+    private TextPaint getPrototypePaint(int style) {
+        TextPaint paint = prototypePaints.get(style);
+        if (paint == null) {
+            // 按EmojiTextViewManager设置属性的方式配置一个EmojiTextView，主题中的字体和度量与实际显示消息的view一致，
+            // 预加载的尺寸才能命中缓存；每种样式只创建一次
+            EmojiTextView prototype = new EmojiTextView(getReactApplicationContext());
+            prototype.setTypeface(prototype.getTypeface(), style);
+            paint = new TextPaint(prototype.getPaint());
+            prototypePaints.put(style, paint);
+        }
+        return paint;
+    }
+
+    private void startPrefetch(ReactApplicationContext context, EmojiRegistry registry, List<String> nameList,
+                               float[] sizes, int style, long budgetBytes, String requestId, Promise promise) {
+        TextPaint paint = new TextPaint(getPrototypePaint(style));
+        EmojiPrefetcher.prefetch(context, registry, nameList, sizes, paint, budgetBytes, new EmojiPrefetcher.Listener() {
+            @Override
+            public void onProgress(int loaded, int total) {
+                if (!context.hasActiveReactInstance()) return;
+                WritableMap event = Arguments.createMap();
+                event.putString("requestId", requestId);
+                event.putInt("loaded", loaded);
+                event.putInt("total", total);
+                context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit(EVENT_PREFETCH_PROGRESS, event);
+            }
+
+            @Override
+            public void onComplete(int loaded, int total, int skipped) {
+                WritableMap result = Arguments.createMap();
+                result.putInt("loaded", loaded);
+                result.putInt("total", total);
+                result.putInt("skipped", skipped);
+                promise.resolve(result);
+            }
+        });
+    }
+}
@@ -13,13 +13,13 @@ public class EmojiChatInputPackage implements ReactPackage {
     @NonNull
     @Override
     public List<NativeModule> createNativeModules(@NonNull ReactApplicationContext reactContext) {
-        return Collections.emptyList();
+        return Collections.<NativeModule>singletonList(new EmojiChatInputModule(reactContext));
     }
 
     @NonNull    @Override
     public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
         return Arrays.<ViewManager>asList(
-            new EmojiChatInputViewManager(),
+            new EmojiChatInputViewManager(reactContext),
             new EmojiTextViewManager()
         );
     }
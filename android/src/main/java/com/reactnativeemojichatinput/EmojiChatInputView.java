@@ -1,34 +1,78 @@
 package com.reactnativeemojichatinput;
 
+import android.content.ClipData;
+import android.content.ClipboardManager;
 import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.drawable.Drawable;
 import android.content.res.Resources;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
+import android.text.InputFilter;
+import android.text.NoCopySpan;
+import android.text.Spannable;
 import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.TextPaint;
 import android.text.TextWatcher;
 import android.util.AttributeSet;
 import android.view.KeyEvent;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputConnection;
+import android.view.inputmethod.InputConnectionWrapper;
 import android.widget.EditText;
+import android.widget.TextView;
 import androidx.annotation.Nullable;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.uimanager.events.RCTEventEmitter;
 import java.lang.reflect.Field;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import org.json.JSONObject;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.FutureTask;
 
-public class EmojiChatInputView extends EditText {
-    private JSONObject emojiConfig;
-    private int maxLength = -1;
+public class EmojiChatInputView extends EditText implements EmojiConfigStore.Host {
+    /**
+     * textChangeDebounceMs取该值时每次编辑立即发送onTextChange
+     */
+    public static final int TEXT_CHANGE_IMMEDIATE = -1;
+    // 超过该长度的粘贴内容在后台线程生成span
+    private static final int ASYNC_PASTE_THRESHOLD = 1024;
+
+    private EmojiRegistry emojiRegistry;
     private boolean multiline = true;
-    private Pattern emojiPattern = Pattern.compile("\\[([a-zA-Z0-9_]+)\\]");
     private Map<String, AnimatedEmojiSpan> emojiSpanCache = new HashMap<>();
+    private int pendingEditStart = -1;
+    private int pendingEditEnd = -1;
+    @Nullable
+    private AnimatedEmojiSpan[] pendingAffectedSpans;
+    private final SpanScanCallback spanScanCallback = new SpanScanCallback();
+    private final EmojiAnimationPolicy animationPolicy = new EmojiAnimationPolicy();
+    private int textChangeDebounceMs = TEXT_CHANGE_IMMEDIATE;
+    private boolean textChangeDiff = false;
+    private boolean emitTokens = false;
+    private final EmojiSpanPlan tokenPlan = new EmojiSpanPlan();
+    private boolean textChangePending = false;
+    // 最近一次发送给JS的文本，用于过滤重复事件和计算差量
+    @Nullable
+    private String lastSentText;
+    private final Runnable textChangeFlush = this::flushTextChangeEvent;
+    private final EmojiLengthFilter lengthFilter = new EmojiLengthFilter(this::sendTruncateEvent);
+    // 上一次的选区，用于判断光标移动方向
+    private int lastSelectionStart = -1;
+    private int lastSelectionEnd = -1;
+    private boolean snappingSelection = false;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    @Nullable
+    private PendingPaste pendingPaste;
+    // 为true时文本变化只维护已有span，不扫描新的emoji（粘贴内容交给后台生成）
+    private boolean deferSpanProcessing = false;
 
     public EmojiChatInputView(Context context) {
         super(context);
@@ -46,23 +90,41 @@ public class EmojiChatInputView extends EditText {
     }
 
     private void init() {
+        setFilters(new InputFilter[] {lengthFilter});
         addTextChangedListener(new TextWatcher() {
             @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                // 记录即将被编辑影响的span，编辑完成后释放被整体删除的span
+                if (s instanceof Spanned) {
+                    pendingAffectedSpans = ((Spanned) s).getSpans(start, start + count, AnimatedEmojiSpan.class);
+                }
+            }
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                processEmojiText();
-                sendTextChangeEvent();
+                pendingEditStart = start;
+                pendingEditEnd = start + count;
             }
 
             @Override
-            public void afterTextChanged(Editable s) {}
+            public void afterTextChanged(Editable s) {
+                processEmojiText(s, pendingEditStart, pendingEditEnd);
+                pendingEditStart = -1;
+                pendingEditEnd = -1;
+                scheduleTextChangeEvent();
+            }
         });
 
         setOnKeyListener((v, keyCode, event) -> {
+            // 退格和向后删除整体删除光标旁的emoji，不再逐个删除标记字符
+            if (event.getAction() == KeyEvent.ACTION_DOWN) {
+                if (keyCode == KeyEvent.KEYCODE_DEL && deleteEmojiToken(true)) return true;
+                if (keyCode == KeyEvent.KEYCODE_FORWARD_DEL && deleteEmojiToken(false)) return true;
+            }
             if (keyCode == KeyEvent.KEYCODE_ENTER && event.getAction() == KeyEvent.ACTION_DOWN) {
                 if (!multiline) {
+                    // JS先收到最终文本，再收到提交事件
+                    flushTextChangeEvent();
                     sendSubmitEvent();
                     return true;
                 }
@@ -74,6 +136,7 @@ public class EmojiChatInputView extends EditText {
             if (hasFocus) {
                 sendFocusEvent();
             } else {
+                flushTextChangeEvent();
                 sendBlurEvent();
             }
         });
@@ -81,14 +144,113 @@ public class EmojiChatInputView extends EditText {
 
     public void setEmojiConfig(String configJson) {
         try {
-            this.emojiConfig = new JSONObject(configJson);
+            setEmojiRegistry(EmojiRegistry.fromJson(configJson));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 通过EmojiConfigStore中注册的配置id设置emoji配置
+     */
+    public void setEmojiConfigId(@Nullable String configId) {
+        EmojiConfigStore.getInstance().bind(this, configId);
+    }
+
+    @Override
+    public void setEmojiRegistry(@Nullable EmojiRegistry registry) {
+        if (registry == emojiRegistry) return;
+        EmojiRegistry previous = emojiRegistry;
+        this.emojiRegistry = registry;
+        lengthFilter.setRegistry(registry);
+        Editable text = getText();
+        if (previous != null && registry != null) {
+            // 配置热更新时只替换引用了变化emoji的span
+            EmojiRegistry.Diff diff = EmojiRegistry.diff(previous, registry);
+            if (!diff.isEmpty()) {
+                rebindEmojiSpans(text, registry, diff);
+            }
+            // 待处理的粘贴范围内还没有span，按新配置重新生成
+            PendingPaste paste = pendingPaste;
+            if (paste != null && text.getSpanStart(paste) >= 0) {
+                if (paste.task != null) {
+                    paste.task.cancel(false);
+                    EmojiRenderExecutor.get().remove(paste.task);
+                }
+                startPendingPaste(paste, text, registry);
+            }
+            return;
+        }
+        cancelPendingPaste();
+        if (registry == null) {
+            // 清空配置时[name]退回普通文本，移除并释放已有的span
+            removeEmojiSpans(text);
+            return;
+        }
+        // 首次设置配置时全量生成span
+        processEmojiText(text, 0, text.length());
+    }
+
+    /**
+     * 移除并释放输入框中所有emoji span，长度计算不再按emoji折算
+     */
+    private void removeEmojiSpans(Editable text) {
+        beginBatchEdit();
+        try {
+            for (AnimatedEmojiSpan span : text.getSpans(0, text.length(), AnimatedEmojiSpan.class)) {
+                text.removeSpan(span);
+                span.release();
+            }
+            lengthFilter.resetTokenSavings();
+        } finally {
+            endBatchEdit();
+        }
+        EmojiAnimationClock.getInstance().onHostTextChanged(this);
+    }
+
+    /**
+     * 移除引用了变化emoji的span，再为新配置中新增或变化的emoji设置span，其余span保持不变
+     */
+    private void rebindEmojiSpans(Editable text, EmojiRegistry registry, EmojiRegistry.Diff diff) {
+        beginBatchEdit();
+        try {
+            for (AnimatedEmojiSpan span : text.getSpans(0, text.length(), AnimatedEmojiSpan.class)) {
+                if (diff.contains(span.getEmojiName())) {
+                    text.removeSpan(span);
+                    lengthFilter.onTokenRemoved(span.getEmojiName().length() + 2);
+                    span.release();
+                }
+            }
+            spanScanCallback.registry = registry;
+            EmojiTokenScanner.scan(text, registry, new EmojiTokenScanner.Callback() {
+                @Override
+                public void onText(CharSequence scanned, int start, int end) {}
+
+                @Override
+                public void onEmoji(CharSequence scanned, int start, int end, int emojiId) {
+                    if (emojiId != EmojiRegistry.NO_EMOJI && diff.contains(registry.getName(emojiId))) {
+                        spanScanCallback.onEmoji(scanned, start, end, emojiId);
+                    }
+                }
+            });
+        } finally {
+            endBatchEdit();
+        }
+        EmojiAnimationClock.getInstance().onHostTextChanged(this);
+    }
+
+    /**
+     * 最大长度，小于0表示不限制；超出时截断插入的内容并发送onTruncate
+     */
     public void setMaxLength(int maxLength) {
-        this.maxLength = maxLength;
+        lengthFilter.setMaxLength(maxLength);
+    }
+
+    /**
+     * 计算最大长度时每个emoji是否按1个字符计算，关闭后按[name]标记的字符数计算
+     */
+    public void setCountEmojiAsOne(boolean countEmojiAsOne) {
+        lengthFilter.setCountEmojiAsOne(countEmojiAsOne);
     }
 
     public void setMultiline(boolean multiline) {
@@ -98,13 +260,52 @@ public class EmojiChatInputView extends EditText {
         }
     }
 
+    /**
+     * 替换全部文本但只修改与当前内容不同的部分，保留未变化区域的span、光标位置和输入法的组合区。
+     * 变化区域之后的光标随文本长度平移，落在变化区域内的光标移到新内容末尾
+     */
+    public void setTextPreservingSelection(String newText) {
+        Editable text = getText();
+        int length = text.length();
+        int prefix = 0;
+        int maxPrefix = Math.min(length, newText.length());
+        while (prefix < maxPrefix && text.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && text.charAt(length - 1 - suffix) == newText.charAt(newText.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (prefix == length && prefix == newText.length()) return;
+
+        int changeEnd = length - suffix;
+        int newChangeEnd = newText.length() - suffix;
+        int selStart = mapOffsetAfterReplace(getSelectionStart(), prefix, changeEnd, newChangeEnd);
+        int selEnd = mapOffsetAfterReplace(getSelectionEnd(), prefix, changeEnd, newChangeEnd);
+        beginBatchEdit();
+        try {
+            text.replace(prefix, changeEnd, newText, prefix, newChangeEnd);
+            if (selStart >= 0 && selEnd >= 0) {
+                int newLength = text.length();
+                setSelection(Math.min(selStart, newLength), Math.min(selEnd, newLength));
+            }
+        } finally {
+            endBatchEdit();
+        }
+    }
+
+    private static int mapOffsetAfterReplace(int offset, int start, int end, int newEnd) {
+        if (offset < 0 || offset <= start) return offset;
+        if (offset >= end) return offset + newEnd - end;
+        return newEnd;
+    }
+
     public void insertEmoji(String emojiName) {
-        if (emojiConfig == null) return;
+        if (emojiRegistry == null) return;
 
         try {
-            JSONObject emojis = emojiConfig.getJSONObject("emojis");
-            if (emojis.has(emojiName)) {
-                JSONObject emoji = emojis.getJSONObject(emojiName);
+            if (emojiRegistry.contains(emojiName)) {
                 String emojiText = "[" + emojiName + "]";
                 
                 int start = getSelectionStart();
@@ -120,51 +321,552 @@ public class EmojiChatInputView extends EditText {
         }
     }
 
-    private void processEmojiText() {
-        if (emojiConfig == null) return;
+    @Override
+    public InputConnection onCreateInputConnection(EditorInfo outAttrs) {
+        InputConnection connection = super.onCreateInputConnection(outAttrs);
+        return connection != null ? new EmojiInputConnection(connection) : null;
+    }
+
+    /**
+     * 选区端点落在emoji内部时移到emoji边界：逐字符移动时按移动方向越过emoji，点击等跳转移到较近的一侧
+     */
+    @Override
+    protected void onSelectionChanged(int selStart, int selEnd) {
+        super.onSelectionChanged(selStart, selEnd);
+        Editable text = getText();
+        if (snappingSelection || text == null || selStart < 0) return;
+        int start = snapToToken(text, selStart, lastSelectionStart);
+        int end = selStart == selEnd ? start : snapToToken(text, selEnd, lastSelectionEnd);
+        lastSelectionStart = start;
+        lastSelectionEnd = end;
+        if (start != selStart || end != selEnd) {
+            snappingSelection = true;
+            try {
+                setSelection(start, end);
+            } finally {
+                snappingSelection = false;
+            }
+        }
+    }
+
+    private static int snapToToken(Spanned text, int offset, int previousOffset) {
+        AnimatedEmojiSpan[] spans = text.getSpans(offset, offset, AnimatedEmojiSpan.class);
+        for (AnimatedEmojiSpan span : spans) {
+            int spanStart = text.getSpanStart(span);
+            int spanEnd = text.getSpanEnd(span);
+            if (spanStart < offset && offset < spanEnd) {
+                if (previousOffset >= 0 && Math.abs(offset - previousOffset) == 1) {
+                    return offset > previousOffset ? spanEnd : spanStart;
+                }
+                return offset - spanStart <= spanEnd - offset ? spanStart : spanEnd;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * 光标前（backward）或光标后紧邻emoji时一次删除整个标记，返回是否已处理
+     */
+    private boolean deleteEmojiToken(boolean backward) {
+        Editable text = getText();
+        int cursor = getSelectionStart();
+        if (text == null || cursor < 0 || cursor != getSelectionEnd()) return false;
+        AnimatedEmojiSpan[] spans = text.getSpans(cursor, cursor, AnimatedEmojiSpan.class);
+        for (AnimatedEmojiSpan span : spans) {
+            int spanStart = text.getSpanStart(span);
+            int spanEnd = text.getSpanEnd(span);
+            if (backward ? spanEnd == cursor : spanStart == cursor) {
+                text.delete(spanStart, spanEnd);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把输入法的删除范围扩展到完整的emoji标记，删除只产生一次编辑，不会留下残缺的标记
+     */
+    private int[] expandToTokens(int start, int end) {
+        Editable text = getText();
+        AnimatedEmojiSpan[] spans = text.getSpans(start, end, AnimatedEmojiSpan.class);
+        for (AnimatedEmojiSpan span : spans) {
+            int spanStart = text.getSpanStart(span);
+            int spanEnd = text.getSpanEnd(span);
+            if (spanStart < end && spanEnd > start) {
+                start = Math.min(start, spanStart);
+                end = Math.max(end, spanEnd);
+            }
+        }
+        return new int[] {start, end};
+    }
+
+    private class EmojiInputConnection extends InputConnectionWrapper {
+        EmojiInputConnection(InputConnection target) {
+            super(target, true);
+        }
+
+        @Override
+        public boolean deleteSurroundingText(int beforeLength, int afterLength) {
+            int selStart = getSelectionStart();
+            int selEnd = getSelectionEnd();
+            if (selStart < 0 || selEnd < selStart) {
+                return super.deleteSurroundingText(beforeLength, afterLength);
+            }
+            int[] range = expandToTokens(Math.max(0, selStart - beforeLength),
+                Math.min(getText().length(), selEnd + afterLength));
+            return super.deleteSurroundingText(selStart - range[0], range[1] - selEnd);
+        }
+
+        @Override
+        public boolean deleteSurroundingTextInCodePoints(int beforeLength, int afterLength) {
+            // 先把码点数换算成字符偏移，再按字符范围扩展和删除
+            int selStart = getSelectionStart();
+            int selEnd = getSelectionEnd();
+            if (selStart < 0 || selEnd < selStart) {
+                return super.deleteSurroundingTextInCodePoints(beforeLength, afterLength);
+            }
+            Editable text = getText();
+            int start = selStart;
+            for (int i = 0; i < beforeLength && start > 0; i++) {
+                start = Character.offsetByCodePoints(text, start, -1);
+            }
+            int end = selEnd;
+            for (int i = 0; i < afterLength && end < text.length(); i++) {
+                end = Character.offsetByCodePoints(text, end, 1);
+            }
+            int[] range = expandToTokens(start, end);
+            return super.deleteSurroundingText(selStart - range[0], range[1] - selEnd);
+        }
+    }
+
+    @Override
+    public boolean onTextContextMenuItem(int id) {
+        if ((id == android.R.id.paste || id == android.R.id.pasteAsPlainText) && pasteAsync()) {
+            return true;
+        }
+        return super.onTextContextMenuItem(id);
+    }
+
+    /**
+     * 较长的粘贴内容先以纯文本插入，后台扫描并生成span后一次性替换回来，返回是否已处理
+     */
+    private boolean pasteAsync() {
+        EmojiRegistry registry = emojiRegistry;
+        ClipboardManager clipboard = (ClipboardManager) getContext().getSystemService(Context.CLIPBOARD_SERVICE);
+        if (registry == null || clipboard == null) return false;
+        ClipData clip = clipboard.getPrimaryClip();
+        if (clip == null || clip.getItemCount() == 0) return false;
+
+        // 与TextView一致，多个条目以换行拼接
+        StringBuilder pasted = new StringBuilder();
+        for (int i = 0; i < clip.getItemCount(); i++) {
+            CharSequence item = clip.getItemAt(i).coerceToText(getContext());
+            if (item == null) continue;
+            if (pasted.length() > 0) pasted.append('\n');
+            pasted.append(item);
+        }
+        if (pasted.length() < ASYNC_PASTE_THRESHOLD) return false;
+
+        // 上一次粘贴还没有处理完时先同步完成，同一时间只保留一个后台任务
+        flushPendingPaste();
+
+        Editable text = getText();
+        int selStart = getSelectionStart();
+        int selEnd = getSelectionEnd();
+        int start = Math.max(0, Math.min(selStart, selEnd));
+        int end = Math.max(0, Math.max(selStart, selEnd));
+        int lengthBefore = text.length();
+        beginBatchEdit();
+        deferSpanProcessing = true;
+        try {
+            text.replace(start, end, pasted.toString());
+            deferSpanProcessing = false;
+            // 长度限制可能截断了粘贴内容
+            int pasteEnd = start + text.length() - (lengthBefore - (end - start));
+            setSelection(pasteEnd);
+            if (pasteEnd > start) {
+                PendingPaste paste = new PendingPaste();
+                text.setSpan(paste, start, pasteEnd, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                pendingPaste = paste;
+                startPendingPaste(paste, text, registry);
+            }
+        } finally {
+            deferSpanProcessing = false;
+            endBatchEdit();
+        }
+        return true;
+    }
+
+    /**
+     * 对标记范围内的当前文本快照生成span，测量和图片加载也在后台完成
+     */
+    private void startPendingPaste(PendingPaste paste, Editable text, EmojiRegistry registry) {
+        int start = text.getSpanStart(paste);
+        int end = text.getSpanEnd(paste);
+        String snapshot = text.subSequence(start, end).toString();
+        paste.snapshot = snapshot;
+        // 测量参数必须在主线程读取
+        TextPaint paint = new TextPaint(getPaint());
+        Context context = getContext();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            SpannableStringBuilder builder = new SpannableStringBuilder(snapshot);
+            // getSize只有拿到字体度量时才计算尺寸并获取drawable，所有span共用一个
+            Paint.FontMetricsInt metrics = new Paint.FontMetricsInt();
+            EmojiTokenScanner.scan(snapshot, registry, new EmojiTokenScanner.Callback() {
+                @Override
+                public void onText(CharSequence scanned, int tokenStart, int tokenEnd) {}
+
+                @Override
+                public void onEmoji(CharSequence scanned, int tokenStart, int tokenEnd, int emojiId) {
+                    if (emojiId == EmojiRegistry.NO_EMOJI) return;
+                    AnimatedEmojiSpan span = new AnimatedEmojiSpan(context, registry.getName(emojiId),
+                        registry.getImagePath(emojiId), registry.getWidth(emojiId), registry.getHeight(emojiId));
+                    span.getSize(paint, scanned, tokenStart, tokenEnd, metrics);
+                    builder.setSpan(span, tokenStart, tokenEnd, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                }
+            });
+            mainHandler.post(() -> applyPendingPaste(paste, snapshot, builder));
+        }, null);
+        paste.task = task;
+        EmojiRenderExecutor.get().execute(task);
+    }
+
+    private void applyPendingPaste(PendingPaste paste, String snapshot, SpannableStringBuilder built) {
+        Editable text = getText();
+        // 已取消或已按新快照重新开始的任务结果直接丢弃
+        if (paste != pendingPaste || snapshot != paste.snapshot || text == null) {
+            AnimatedEmojiSpan.releaseAll(built);
+            return;
+        }
+        int start = text.getSpanStart(paste);
+        int end = text.getSpanEnd(paste);
+        if (start < 0) {
+            pendingPaste = null;
+            AnimatedEmojiSpan.releaseAll(built);
+            return;
+        }
+        if (!regionEquals(text, start, end, paste.snapshot)) {
+            // 快照之后范围内的文本又被修改，按当前内容重新生成
+            AnimatedEmojiSpan.releaseAll(built);
+            startPendingPaste(paste, text, emojiRegistry);
+            return;
+        }
+        text.removeSpan(paste);
+        pendingPaste = null;
+
+        int selStart = getSelectionStart();
+        int selEnd = getSelectionEnd();
+        // 内容相同，只替换span；替换期间不再扫描
+        beginBatchEdit();
+        deferSpanProcessing = true;
+        try {
+            text.replace(start, end, built);
+            for (AnimatedEmojiSpan span : built.getSpans(0, built.length(), AnimatedEmojiSpan.class)) {
+                lengthFilter.onTokenAdded(built.getSpanEnd(span) - built.getSpanStart(span));
+            }
+            setSelection(selStart, selEnd);
+        } finally {
+            deferSpanProcessing = false;
+            endBatchEdit();
+        }
+    }
+
+    /**
+     * 编辑改变了待处理的粘贴范围内的文本时取消后台任务，按新内容重新开始；范围被整体删除时放弃。
+     * 紧挨着范围边界输入不会进入范围（span是EXCLUSIVE_EXCLUSIVE），内容与快照相同时任务继续
+     */
+    private void onPendingPasteEdited(Editable text, int editStart, int editEnd) {
+        PendingPaste paste = pendingPaste;
+        int start = text.getSpanStart(paste);
+        int end = text.getSpanEnd(paste);
+        if (start < 0 || start == end) {
+            cancelPendingPaste();
+            return;
+        }
+        if (editStart <= end && editEnd >= start && paste.task != null
+                && !regionEquals(text, start, end, paste.snapshot)) {
+            paste.task.cancel(false);
+            EmojiRenderExecutor.get().remove(paste.task);
+            startPendingPaste(paste, text, emojiRegistry);
+        }
+    }
+
+    /**
+     * 取消后台任务并在主线程扫描粘贴范围
+     */
+    private void flushPendingPaste() {
+        PendingPaste paste = pendingPaste;
+        if (paste == null) return;
+        Editable text = getText();
+        int start = text.getSpanStart(paste);
+        int end = text.getSpanEnd(paste);
+        cancelPendingPaste();
+        if (start >= 0 && end > start) {
+            processEmojiText(text, start, end);
+        }
+    }
+
+    private void cancelPendingPaste() {
+        PendingPaste paste = pendingPaste;
+        pendingPaste = null;
+        if (paste == null) return;
+        if (paste.task != null) {
+            paste.task.cancel(false);
+            EmojiRenderExecutor.get().remove(paste.task);
+        }
+        Editable text = getText();
+        if (text != null) {
+            text.removeSpan(paste);
+        }
+    }
+
+    private static boolean regionEquals(CharSequence text, int start, int end, String expected) {
+        if (end - start != expected.length()) return false;
+        for (int i = 0; i < expected.length(); i++) {
+            if (text.charAt(start + i) != expected.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 标记后台生成span中的粘贴范围，随编辑自动调整位置
+     */
+    private static final class PendingPaste implements NoCopySpan {
+        String snapshot;
+        @Nullable
+        FutureTask<Void> task;
+    }
+
+    /**
+     * 只重新扫描编辑区域[editStart, editEnd)所在的token窗口，直接在Editable上增删span，
+     * 窗口外已有的span保持不变，也不再调用setText
+     */
+    private void processEmojiText(Editable text, int editStart, int editEnd) {
+        EmojiPerfStats stats = EmojiPerfStats.getInstance();
+        long startNanos = stats.begin("EmojiChatInputView.processEmojiText");
+        try {
+            updateEmojiSpans(text, editStart, editEnd);
+        } finally {
+            stats.end(EmojiPerfStats.INPUT_PARSE, startNanos);
+        }
+    }
+
+    private void updateEmojiSpans(Editable text, int editStart, int editEnd) {
+        int length = text.length();
+        if (editStart < 0 || editEnd < editStart) {
+            editStart = 0;
+            editEnd = length;
+        }
+        editStart = Math.min(editStart, length);
+        editEnd = Math.min(editEnd, length);
+
+        // 整体被删除的span已经从Editable中移除，这里释放其持有的共享drawable
+        AnimatedEmojiSpan[] affectedSpans = pendingAffectedSpans;
+        pendingAffectedSpans = null;
+        if (affectedSpans != null) {
+            for (AnimatedEmojiSpan span : affectedSpans) {
+                if (text.getSpanStart(span) < 0) {
+                    lengthFilter.onTokenRemoved(span.getEmojiName().length() + 2);
+                    span.release();
+                }
+            }
+        }
+
+        // Editable实例不变，通知动画时钟在下一帧重新收集span
+        EmojiAnimationClock.getInstance().onHostTextChanged(this);
 
+        if (deferSpanProcessing) return;
+        if (pendingPaste != null) {
+            onPendingPasteEdited(text, editStart, editEnd);
+        }
+
+        EmojiRegistry registry = emojiRegistry;
+        if (registry == null) return;
+
+        // 批量编辑只把窗口内的span增删合并为一次输入法更新，每次增删span仍会让DynamicLayout重排所在的行；
+        // 窗口最多覆盖编辑点两侧的token，重排范围很小。直接在原文本上增删span而不替换文本，
+        // 输入法的组合区和选区不受影响
+        beginBatchEdit();
         try {
-            SpannableStringBuilder builder = new SpannableStringBuilder(getText());
-            Matcher matcher = emojiPattern.matcher(builder.toString());
-            
-            // 清除旧的emoji spans
-            AnimatedEmojiSpan[] oldSpans = builder.getSpans(0, builder.length(), AnimatedEmojiSpan.class);
+            // token窗口向两侧扩展的最大字符数由最长的emoji名称决定
+            int maxTokenLength = registry.getMaxNameLength() + 1;
+            int windowStart = findTokenWindowStart(text, editStart, maxTokenLength);
+            int windowEnd = findTokenWindowEnd(text, editEnd, maxTokenLength);
+
+            // 清除窗口内的旧emoji spans
+            AnimatedEmojiSpan[] oldSpans = text.getSpans(windowStart, windowEnd, AnimatedEmojiSpan.class);
             for (AnimatedEmojiSpan span : oldSpans) {
-                builder.removeSpan(span);
-            }
-
-            JSONObject emojis = emojiConfig.getJSONObject("emojis");
-            
-            while (matcher.find()) {
-                String emojiName = matcher.group(1);
-                if (emojis.has(emojiName)) {
-                    JSONObject emoji = emojis.getJSONObject(emojiName);
-                    String imagePath = emoji.getString("image");
-                    int width = emoji.optInt("width", 24);
-                    int height = emoji.optInt("height", 24);
-                    
-                    AnimatedEmojiSpan span = new AnimatedEmojiSpan(getContext(), emojiName, imagePath, width, height);
-                    builder.setSpan(span, matcher.start(), matcher.end(), SpannableStringBuilder.SPAN_EXCLUSIVE_EXCLUSIVE);
+                if (text.getSpanStart(span) < windowEnd && text.getSpanEnd(span) > windowStart) {
+                    text.removeSpan(span);
+                    lengthFilter.onTokenRemoved(span.getEmojiName().length() + 2);
+                    span.release();
                 }
             }
-            
-            setText(builder);
-            setSelection(builder.length());
+
+            spanScanCallback.registry = registry;
+            EmojiTokenScanner.scan(text, windowStart, windowEnd, registry, spanScanCallback);
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            endBatchEdit();
         }
     }
 
+    /**
+     * 从编辑起点向前扩展到可能与编辑区域组成token的'['位置
+     */
+    private static int findTokenWindowStart(CharSequence text, int start, int maxTokenLength) {
+        int limit = Math.max(0, start - maxTokenLength);
+        for (int i = start - 1; i >= limit; i--) {
+            char c = text.charAt(i);
+            if (c == '[') {
+                return i;
+            }
+            if (!EmojiTokenScanner.isEmojiNameChar(c)) {
+                break;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * 从编辑终点向后扩展到可能与编辑区域组成token的']'位置
+     */
+    private static int findTokenWindowEnd(CharSequence text, int end, int maxTokenLength) {
+        int limit = Math.min(text.length(), end + maxTokenLength);
+        for (int i = end; i < limit; i++) {
+            char c = text.charAt(i);
+            if (c == ']') {
+                return i + 1;
+            }
+            if (!EmojiTokenScanner.isEmojiNameChar(c)) {
+                break;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * 扫描回调，直接把识别出的emoji span设置到正在编辑的Editable上
+     */
+    private class SpanScanCallback implements EmojiTokenScanner.Callback {
+        EmojiRegistry registry;
+
+        @Override
+        public void onText(CharSequence text, int start, int end) {}
+
+        @Override
+        public void onEmoji(CharSequence text, int start, int end, int emojiId) {
+            if (emojiId == EmojiRegistry.NO_EMOJI) return;
+            AnimatedEmojiSpan span = new AnimatedEmojiSpan(getContext(), registry.getName(emojiId),
+                registry.getImagePath(emojiId), registry.getWidth(emojiId), registry.getHeight(emojiId));
+            ((Spannable) text).setSpan(span, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            lengthFilter.onTokenAdded(end - start);
+        }
+    }
+
+    /**
+     * 把span规划压平为[start, end, id, start, end, id, ...]，普通文本的id为NO_EMOJI
+     */
+    private WritableArray collectTokens(String text) {
+        tokenPlan.build(text, emojiRegistry);
+        WritableArray array = Arguments.createArray();
+        for (int i = 0; i < tokenPlan.size(); i++) {
+            array.pushInt(tokenPlan.getStart(i));
+            array.pushInt(tokenPlan.getEnd(i));
+            array.pushInt(tokenPlan.getEmojiId(i));
+        }
+        return array;
+    }
+
     public String getPlainText() {
+        return EmojiTokenScanner.getPlainText(getText());
+    }
+
+    /**
+     * onTextChange的发送间隔：TEXT_CHANGE_IMMEDIATE每次编辑立即发送，0合并到下一帧发送，
+     * 大于0时在停止输入该毫秒数后发送。合并期间的多次编辑只发送最终文本
+     */
+    public void setTextChangeDebounceMs(int debounceMs) {
+        if (debounceMs == textChangeDebounceMs) return;
+        this.textChangeDebounceMs = debounceMs;
+        if (textChangePending) {
+            flushTextChangeEvent();
+        }
+    }
+
+    /**
+     * 开启后onTextChange只携带相对上一次事件的变化区间和插入的文本，由JS还原完整文本
+     */
+    public void setTextChangeDiff(boolean diff) {
+        this.textChangeDiff = diff;
+    }
+
+    /**
+     * 开启后onTextChange附带由原生扫描结果生成的tokens，JS无需再次解析[name]标记
+     */
+    public void setEmitTokens(boolean emitTokens) {
+        this.emitTokens = emitTokens;
+    }
+
+    private void scheduleTextChangeEvent() {
+        if (textChangeDebounceMs < 0) {
+            flushTextChangeEvent();
+            return;
+        }
+        if (textChangeDebounceMs == 0) {
+            if (!textChangePending) {
+                textChangePending = true;
+                postOnAnimation(textChangeFlush);
+            }
+            return;
+        }
+        removeCallbacks(textChangeFlush);
+        textChangePending = true;
+        postDelayed(textChangeFlush, textChangeDebounceMs);
+    }
+
+    /**
+     * 立即发送尚未发送的文本变化，文本与上一次发送的相同时不发送
+     */
+    private void flushTextChangeEvent() {
+        if (textChangePending) {
+            textChangePending = false;
+            removeCallbacks(textChangeFlush);
+        }
         String text = getText().toString();
-        return emojiPattern.matcher(text).replaceAll("");
+        if (text.equals(lastSentText)) return;
+        String previous = lastSentText;
+        lastSentText = text;
+        sendTextChangeEvent(previous, text);
     }
 
-    private void sendTextChangeEvent() {
+    private void sendTextChangeEvent(@Nullable String previous, String text) {
         WritableMap event = Arguments.createMap();
-        event.putString("text", getText().toString());
-        event.putString("plainText", getPlainText());
-        
+        if (textChangeDiff && previous != null) {
+            // 只发送替换区间：previous中[start, end)被替换为inserted
+            int prefix = 0;
+            int maxPrefix = Math.min(previous.length(), text.length());
+            while (prefix < maxPrefix && previous.charAt(prefix) == text.charAt(prefix)) {
+                prefix++;
+            }
+            int suffix = 0;
+            int maxSuffix = maxPrefix - prefix;
+            while (suffix < maxSuffix
+                && previous.charAt(previous.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+                suffix++;
+            }
+            event.putInt("start", prefix);
+            event.putInt("end", previous.length() - suffix);
+            event.putString("inserted", text.substring(prefix, text.length() - suffix));
+        } else {
+            event.putString("text", text);
+            event.putString("plainText", getPlainText());
+        }
+        if (emitTokens) {
+            event.putArray("tokens", collectTokens(text));
+        }
+
         ReactContext reactContext = (ReactContext) getContext();
         reactContext.getJSModule(RCTEventEmitter.class)
             .receiveEvent(getId(), "onTextChange", event);
@@ -179,6 +881,17 @@ public class EmojiChatInputView extends EditText {
             .receiveEvent(getId(), "onEmojiInsert", event);
     }
 
+    private void sendTruncateEvent(int maxLength, int attemptedLength, int acceptedLength) {
+        WritableMap event = Arguments.createMap();
+        event.putInt("maxLength", maxLength);
+        event.putInt("attemptedLength", attemptedLength);
+        event.putInt("acceptedLength", acceptedLength);
+
+        ReactContext reactContext = (ReactContext) getContext();
+        reactContext.getJSModule(RCTEventEmitter.class)
+            .receiveEvent(getId(), "onTruncate", event);
+    }
+
     private void sendFocusEvent() {
         WritableMap event = Arguments.createMap();
         
@@ -205,68 +918,95 @@ public class EmojiChatInputView extends EditText {
             .receiveEvent(getId(), "onSubmit", event);
     }
 
+    @Override
+    protected void onDraw(Canvas canvas) {
+        // 包含文本中所有emoji span的绘制
+        EmojiPerfStats stats = EmojiPerfStats.getInstance();
+        long startNanos = stats.begin("EmojiChatInputView.onDraw");
+        try {
+            super.onDraw(canvas);
+        } finally {
+            stats.end(EmojiPerfStats.INPUT_DRAW, startNanos);
+        }
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
         // 启动所有emoji动画
-        startAllEmojiAnimations();
+        startEmojiAnimations();
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        if (textChangePending) {
+            textChangePending = false;
+            removeCallbacks(textChangeFlush);
+        }
         // 停止所有emoji动画
-        stopAllEmojiAnimations();
+        stopEmojiAnimations();
+        releaseEmojiSpans();
     }
 
     @Override
     protected void onWindowVisibilityChanged(int visibility) {
         super.onWindowVisibilityChanged(visibility);
         if (visibility == VISIBLE) {
-            resumeAllEmojiAnimations();
+            startEmojiAnimations();
         } else {
-            pauseAllEmojiAnimations();
+            stopEmojiAnimations();
         }
     }
 
-    private void startAllEmojiAnimations() {
-        if (getText() instanceof SpannableStringBuilder) {
-            SpannableStringBuilder builder = (SpannableStringBuilder) getText();
-            AnimatedEmojiSpan[] spans = builder.getSpans(0, builder.length(), AnimatedEmojiSpan.class);
-            for (AnimatedEmojiSpan span : spans) {
-                span.startAnimation();
-            }
+    /**
+     * 释放所有span对共享drawable的引用，view回收或销毁时调用
+     */
+    public void releaseEmojiSpans() {
+        Editable text = getText();
+        if (text == null) return;
+        AnimatedEmojiSpan[] spans = text.getSpans(0, text.length(), AnimatedEmojiSpan.class);
+        for (AnimatedEmojiSpan span : spans) {
+            span.release();
         }
     }
 
-    private void stopAllEmojiAnimations() {
-        if (getText() instanceof SpannableStringBuilder) {
-            SpannableStringBuilder builder = (SpannableStringBuilder) getText();
-            AnimatedEmojiSpan[] spans = builder.getSpans(0, builder.length(), AnimatedEmojiSpan.class);
-            for (AnimatedEmojiSpan span : spans) {
-                span.stopAnimation();
-            }
-        }
+    /**
+     * 滚出可见区域的emoji是否暂停播放
+     */
+    public void setPauseAnimationsOffscreen(boolean pause) {
+        animationPolicy.setPauseWhenOffscreen(pause);
+        EmojiAnimationClock.getInstance().wakeUp();
     }
-    
-    private void pauseAllEmojiAnimations() {
-        if (getText() instanceof SpannableStringBuilder) {
-            SpannableStringBuilder builder = (SpannableStringBuilder) getText();
-            AnimatedEmojiSpan[] spans = builder.getSpans(0, builder.length(), AnimatedEmojiSpan.class);
-            for (AnimatedEmojiSpan span : spans) {
-                span.pauseAnimation();
-            }
-        }
+
+    /**
+     * 省电模式或过热时动图的最高帧率，0表示不限制
+     */
+    public void setLowPowerAnimationFps(int fps) {
+        animationPolicy.setLowPowerFrameRate(fps);
+        EmojiAnimationClock.getInstance().wakeUp();
     }
-    
-    private void resumeAllEmojiAnimations() {
-        if (getText() instanceof SpannableStringBuilder) {
-            SpannableStringBuilder builder = (SpannableStringBuilder) getText();
-            AnimatedEmojiSpan[] spans = builder.getSpans(0, builder.length(), AnimatedEmojiSpan.class);
-            for (AnimatedEmojiSpan span : spans) {
-                span.resumeAnimation();
-            }
-        }
+
+    /**
+     * 同一屏幕内同时播放的动图数量上限，0表示不限制
+     */
+    public void setMaxAnimatedEmojis(int maxAnimatedEmojis) {
+        animationPolicy.setMaxAnimatedEmojis(maxAnimatedEmojis);
+        EmojiAnimationClock.getInstance().wakeUp();
+    }
+
+    /**
+     * 在共享动画时钟上注册，之后文本中的动图随时钟逐帧播放
+     */
+    private void startEmojiAnimations() {
+        EmojiAnimationClock.getInstance().register(this, animationPolicy);
+    }
+
+    /**
+     * 从共享动画时钟注销，动图停在当前帧
+     */
+    private void stopEmojiAnimations() {
+        EmojiAnimationClock.getInstance().unregister(this);
     }
     
     public void setCursorColor(int color) {
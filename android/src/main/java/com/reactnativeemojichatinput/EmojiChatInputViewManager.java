@@ -1,7 +1,6 @@
 package com.reactnativeemojichatinput;
 
 import android.graphics.Color;
-import android.graphics.Typeface;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.facebook.react.bridge.Promise;
@@ -45,9 +44,18 @@ public class EmojiChatInputViewManager extends SimpleViewManager<EmojiChatInputV
                 MapBuilder.of("bubbled", "onEmojiInsert")))
             .put("onSubmit", MapBuilder.of("phasedRegistrationNames", 
                 MapBuilder.of("bubbled", "onSubmit")))
+            .put("onTruncate", MapBuilder.of("phasedRegistrationNames",
+                MapBuilder.of("bubbled", "onTruncate")))
             .build();
     }
 
+    @Override
+    public void onDropViewInstance(@NonNull EmojiChatInputView view) {
+        super.onDropViewInstance(view);
+        EmojiConfigStore.getInstance().bind(view, null);
+        view.releaseEmojiSpans();
+    }
+
     @ReactProp(name = "placeholder")
     public void setPlaceholder(EmojiChatInputView view, @Nullable String placeholder) {
         view.setHint(placeholder);
@@ -74,20 +82,19 @@ public class EmojiChatInputViewManager extends SimpleViewManager<EmojiChatInputV
 
     @ReactProp(name = "fontWeight")
     public void setFontWeight(EmojiChatInputView view, @Nullable String fontWeight) {
-        int typefaceStyle = Typeface.NORMAL;
-        if ("bold".equals(fontWeight)) {
-            typefaceStyle = Typeface.BOLD;
-        } else if ("italic".equals(fontWeight)) {
-            typefaceStyle = Typeface.ITALIC;
-        }
-        view.setTypeface(view.getTypeface(), typefaceStyle);
+        view.setTypeface(view.getTypeface(), EmojiTextViewManager.getTypefaceStyle(fontWeight));
     }
 
-    @ReactProp(name = "maxLength")
+    @ReactProp(name = "maxLength", defaultInt = -1)
     public void setMaxLength(EmojiChatInputView view, int maxLength) {
         view.setMaxLength(maxLength);
     }
 
+    @ReactProp(name = "countEmojiAsOne", defaultBoolean = true)
+    public void setCountEmojiAsOne(EmojiChatInputView view, boolean countEmojiAsOne) {
+        view.setCountEmojiAsOne(countEmojiAsOne);
+    }
+
     @ReactProp(name = "cursorColor", customType = "Color")
     public void setCursorColor(EmojiChatInputView view, @Nullable Integer color) {
         if (color != null) {
@@ -95,13 +102,56 @@ public class EmojiChatInputViewManager extends SimpleViewManager<EmojiChatInputV
         }
     }
 
+    @ReactProp(name = "pauseAnimationsOffscreen", defaultBoolean = true)
+    public void setPauseAnimationsOffscreen(EmojiChatInputView view, boolean pause) {
+        view.setPauseAnimationsOffscreen(pause);
+    }
+
+    @ReactProp(name = "lowPowerAnimationFps", defaultInt = EmojiAnimationPolicy.DEFAULT_LOW_POWER_FRAME_RATE)
+    public void setLowPowerAnimationFps(EmojiChatInputView view, int fps) {
+        view.setLowPowerAnimationFps(fps);
+    }
+
+    @ReactProp(name = "maxAnimatedEmojis", defaultInt = EmojiAnimationPolicy.DEFAULT_MAX_ANIMATED_EMOJIS)
+    public void setMaxAnimatedEmojis(EmojiChatInputView view, int maxAnimatedEmojis) {
+        view.setMaxAnimatedEmojis(maxAnimatedEmojis);
+    }
+
+    @ReactProp(name = "textChangeDebounceMs", defaultInt = EmojiChatInputView.TEXT_CHANGE_IMMEDIATE)
+    public void setTextChangeDebounceMs(EmojiChatInputView view, int debounceMs) {
+        view.setTextChangeDebounceMs(debounceMs);
+    }
+
+    @ReactProp(name = "textChangeDiff")
+    public void setTextChangeDiff(EmojiChatInputView view, boolean diff) {
+        view.setTextChangeDiff(diff);
+    }
+
+    @ReactProp(name = "emitTokens")
+    public void setEmitTokens(EmojiChatInputView view, boolean emitTokens) {
+        view.setEmitTokens(emitTokens);
+    }
+
     @ReactProp(name = "emojiConfig")
     public void setEmojiConfig(EmojiChatInputView view, @Nullable ReadableMap config) {
         if (config != null) {
-            view.setEmojiConfig(config.toString());
+            try {
+                // 相同内容的配置在所有view间共享同一个注册表实例，只解析一次
+                view.setEmojiRegistry(EmojiRegistry.fromJson(config.toString()));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
     }
 
+    /**
+     * 引用通过EmojiNativeManager.registerEmojiConfig注册的配置，不再为每个view传递完整配置
+     */
+    @ReactProp(name = "emojiConfigId")
+    public void setEmojiConfigId(EmojiChatInputView view, @Nullable String configId) {
+        view.setEmojiConfigId(configId);
+    }
+
     @ReactMethod
     public void insertEmoji(int reactTag, String emojiName) {
         UIManagerModule uiManager = reactContext.getNativeModule(UIManagerModule.class);
@@ -119,7 +169,7 @@ public class EmojiChatInputViewManager extends SimpleViewManager<EmojiChatInputV
         uiManager.addUIBlock(nativeViewHierarchyManager -> {
             EmojiChatInputView view = (EmojiChatInputView) nativeViewHierarchyManager.resolveView(reactTag);
             if (view != null) {
-                view.setText(text);
+                view.setTextPreservingSelection(text);
             }
         });
     }
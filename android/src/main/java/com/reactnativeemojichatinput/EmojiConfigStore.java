@@ -0,0 +1,130 @@
+package com.reactnativeemojichatinput;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import org.json.JSONException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 原生侧注册的emoji配置，按配置id查找注册表。
+ *
+ * JS只需注册一次配置（或直接加载打包在assets中的emoji-config.json），之后每个view只通过emojiConfigId
+ * 引用，不再为每一行消息传递和解析完整的配置。同一个id重新注册新内容时，已绑定的view按差异更新span。
+ */
+public final class EmojiConfigStore {
+    public static final String DEFAULT_ASSET_PATH = "emoji-config.json";
+
+    /**
+     * 通过配置id绑定注册表的view
+     */
+    public interface Host {
+        void setEmojiRegistry(@Nullable EmojiRegistry registry);
+    }
+
+    private static volatile EmojiConfigStore instance;
+
+    private final Map<String, EmojiRegistry> registries = new HashMap<>();
+    // 配置id到已绑定view的映射，view被回收后自动移除；只在主线程访问
+    private final Map<String, Set<Host>> hosts = new HashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public static EmojiConfigStore getInstance() {
+        if (instance == null) {
+            synchronized (EmojiConfigStore.class) {
+                if (instance == null) {
+                    instance = new EmojiConfigStore();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private EmojiConfigStore() {}
+
+    /**
+     * 注册配置JSON并返回配置id。configId为空时按配置内容生成，内容相同的配置得到同一个id
+     */
+    public String register(String configJson, @Nullable String configId) throws JSONException {
+        EmojiRegistry registry = EmojiRegistry.fromJson(configJson);
+        String id = configId != null && !configId.isEmpty() ? configId : "config-" + Long.toHexString(registry.getContentHash());
+        EmojiRegistry previous;
+        synchronized (registries) {
+            previous = registries.put(id, registry);
+        }
+        if (previous != registry) {
+            mainHandler.post(() -> notifyHosts(id, registry));
+        }
+        return id;
+    }
+
+    /**
+     * 加载打包在assets中的配置文件，path为空时使用emoji-config.json
+     */
+    public String registerAsset(Context context, @Nullable String path, @Nullable String configId)
+            throws IOException, JSONException {
+        String assetPath = path != null && !path.isEmpty() ? path : DEFAULT_ASSET_PATH;
+        try (InputStream input = context.getAssets().open(assetPath)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return register(output.toString("UTF-8"), configId);
+        }
+    }
+
+    public void unregister(String configId) {
+        synchronized (registries) {
+            registries.remove(configId);
+        }
+    }
+
+    @Nullable
+    public EmojiRegistry get(String configId) {
+        synchronized (registries) {
+            return registries.get(configId);
+        }
+    }
+
+    /**
+     * 把view绑定到配置id，立即应用已注册的配置；配置稍后注册或更新时再通知。只能在主线程调用
+     */
+    public void bind(Host host, @Nullable String configId) {
+        for (Set<Host> bound : hosts.values()) {
+            bound.remove(host);
+        }
+        if (configId == null || configId.isEmpty()) return;
+        Set<Host> bound = hosts.get(configId);
+        if (bound == null) {
+            bound = Collections.newSetFromMap(new WeakHashMap<>());
+            hosts.put(configId, bound);
+        }
+        bound.add(host);
+        EmojiRegistry registry = get(configId);
+        if (registry != null) {
+            host.setEmojiRegistry(registry);
+        }
+    }
+
+    private void notifyHosts(String configId, EmojiRegistry registry) {
+        Set<Host> bound = hosts.get(configId);
+        if (bound == null || get(configId) != registry) return;
+        // 复制一份，回调中可能重新绑定
+        List<Host> targets = new ArrayList<>(bound);
+        for (Host host : targets) {
+            host.setEmojiRegistry(registry);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.reactnativeemojichatinput;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 进程级共享的emoji图片缓存。
+ *
+ * 以图片路径和目标像素尺寸作为key，同一张emoji在所有EmojiTextView/EmojiChatInputView中只解码一次。
+ * 被AnimatedEmojiSpan引用中的条目保存在activeEntries中，引用计数归零后才进入按字节计算大小的LRU，
+ * 超出容量时被淘汰并释放底层资源。
+ */
+public class EmojiDrawableCache {
+    private static final int DEFAULT_MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static volatile EmojiDrawableCache instance;
+
+    private final Object lock = new Object();
+    private final Map<String, Entry> activeEntries = new HashMap<>();
+    private final LruCache<String, Entry> idleEntries;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    public static EmojiDrawableCache getInstance() {
+        if (instance == null) {
+            synchronized (EmojiDrawableCache.class) {
+                if (instance == null) {
+                    instance = new EmojiDrawableCache(DEFAULT_MAX_SIZE_BYTES);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private EmojiDrawableCache(int maxSizeBytes) {
+        idleEntries = new LruCache<String, Entry>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.idleByteCount;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Entry oldValue, Entry newValue) {
+                // 被重新引用的条目会移回activeEntries，只有真正淘汰的才释放资源
+                if (evicted) {
+                    evictionCount++;
+                    oldValue.recycle();
+                }
+            }
+        };
+    }
+
+    /**
+     * 获取指定图片和尺寸的缓存条目，调用方用完后必须调用release。未缓存时提交异步加载，
+     * 返回的条目在加载完成前getDrawable为null
+     */
+    @NonNull
+    public Entry acquire(Context context, String imagePath, int width, int height) {
+        return acquire(context, imagePath, width, height, EmojiImageLoader.PRIORITY_NORMAL);
+    }
+
+    @NonNull
+    Entry acquire(Context context, String imagePath, int width, int height, int priority) {
+        String key = createKey(imagePath, width, height);
+        Entry entry;
+        boolean created = false;
+        synchronized (lock) {
+            entry = activeEntries.get(key);
+            if (entry == null) {
+                entry = idleEntries.remove(key);
+                if (entry != null) {
+                    activeEntries.put(key, entry);
+                }
+            }
+            if (entry != null) {
+                hitCount++;
+            } else {
+                missCount++;
+                entry = new Entry(key, imagePath, width, height);
+                activeEntries.put(key, entry);
+                created = true;
+            }
+            entry.refCount++;
+        }
+        if (created) {
+            EmojiImageLoader.getInstance().load(context, entry, priority);
+        }
+        return entry;
+    }
+
+    public void release(@Nullable Entry entry) {
+        if (entry == null) return;
+        synchronized (lock) {
+            if (entry.refCount <= 0) return;
+            entry.refCount--;
+            if (entry.refCount == 0 && activeEntries.remove(entry.key) == entry) {
+                entry.idleByteCount = Math.max(1, entry.getByteCount());
+                idleEntries.put(entry.key, entry);
+            }
+        }
+    }
+
+    public void setMaxSize(int maxSizeBytes) {
+        synchronized (lock) {
+            idleEntries.resize(maxSizeBytes);
+        }
+    }
+
+    /**
+     * 将未被引用的条目裁剪到指定字节数以内，传0清空全部空闲条目
+     */
+    public void trimToSize(int maxSizeBytes) {
+        synchronized (lock) {
+            idleEntries.trimToSize(maxSizeBytes);
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            int activeBytes = 0;
+            for (Entry entry : activeEntries.values()) {
+                activeBytes += entry.getByteCount();
+            }
+            return new Stats(hitCount, missCount, evictionCount, activeEntries.size(),
+                idleEntries.snapshot().size(),
+                activeBytes, idleEntries.size(), idleEntries.maxSize());
+        }
+    }
+
+    private static String createKey(String imagePath, int width, int height) {
+        return imagePath + '@' + width + 'x' + height;
+    }
+
+    /**
+     * 缓存条目，同一key的所有AnimatedEmojiSpan共享同一个drawable
+     */
+    public static final class Entry {
+        final String key;
+        final String imagePath;
+        final int width;
+        final int height;
+        volatile Drawable drawable;
+        volatile boolean animated = false;
+        volatile boolean failed = false;
+        volatile boolean recycled = false;
+        @Nullable
+        volatile EmojiImageLoader.LoadTask loadTask;
+        int refCount = 0;
+        int idleByteCount = 0;
+        // 加载结束（成功或失败）后执行的回调，由条目锁保护
+        @Nullable
+        private ArrayList<Runnable> loadCallbacks;
+        private boolean loadFinished = false;
+        // 以下字段由加载线程在条目锁内写入
+        @Nullable
+        FutureTarget<Drawable> target;
+        @Nullable
+        Context context;
+
+        Entry(String key, String imagePath, int width, int height) {
+            this.key = key;
+            this.imagePath = imagePath;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Nullable
+        public Drawable getDrawable() {
+            return drawable;
+        }
+
+        public boolean isAnimated() {
+            return animated;
+        }
+
+        /**
+         * 加载结束（成功或失败）后在加载线程执行回调，已经结束时立即在当前线程执行
+         */
+        void whenLoaded(Runnable callback) {
+            synchronized (this) {
+                if (!loadFinished) {
+                    if (loadCallbacks == null) {
+                        loadCallbacks = new ArrayList<>(1);
+                    }
+                    loadCallbacks.add(callback);
+                    return;
+                }
+            }
+            callback.run();
+        }
+
+        void finishLoading() {
+            ArrayList<Runnable> callbacks;
+            synchronized (this) {
+                loadFinished = true;
+                callbacks = loadCallbacks;
+                loadCallbacks = null;
+            }
+            if (callbacks != null) {
+                for (Runnable callback : callbacks) {
+                    callback.run();
+                }
+            }
+        }
+
+        /**
+         * 已提交加载但结果还没返回，此时绘制占位
+         */
+        public boolean isLoading() {
+            return drawable == null && !failed && !recycled;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        int getByteCount() {
+            Drawable current = drawable;
+            if (current instanceof AnimatedEmojiFrames) {
+                return ((AnimatedEmojiFrames) current).getByteCount();
+            }
+            if (current instanceof BitmapDrawable) {
+                Bitmap bitmap = ((BitmapDrawable) current).getBitmap();
+                if (bitmap != null) {
+                    return bitmap.getAllocationByteCount();
+                }
+            }
+            // 尚未加载完成或无法获取真实大小时按ARGB_8888估算
+            return width * height * 4;
+        }
+
+        void recycle() {
+            Drawable current;
+            FutureTarget<Drawable> pendingTarget;
+            Context targetContext;
+            synchronized (this) {
+                recycled = true;
+                current = drawable;
+                drawable = null;
+                pendingTarget = target;
+                target = null;
+                targetContext = context;
+            }
+            EmojiImageLoader.getInstance().cancel(this);
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            if (current instanceof AnimatedEmojiFrames) {
+                // 淘汰可能发生在后台线程，帧缓冲只在主线程绘制和推进，回收也放到主线程
+                mainHandler.post(((AnimatedEmojiFrames) current)::recycle);
+            }
+            if (pendingTarget != null && targetContext != null) {
+                mainHandler.post(() -> Glide.with(targetContext).clear(pendingTarget));
+            }
+        }
+    }
+
+    /**
+     * 缓存统计信息快照
+     */
+    public static final class Stats {
+        public final long hitCount;
+        public final long missCount;
+        public final long evictionCount;
+        public final int activeCount;
+        public final int idleCount;
+        public final int activeSizeBytes;
+        public final int idleSizeBytes;
+        public final int maxSizeBytes;
+
+        Stats(long hitCount, long missCount, long evictionCount, int activeCount, int idleCount,
+              int activeSizeBytes, int idleSizeBytes, int maxSizeBytes) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.activeCount = activeCount;
+            this.idleCount = idleCount;
+            this.activeSizeBytes = activeSizeBytes;
+            this.idleSizeBytes = idleSizeBytes;
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        public float getHitRate() {
+            long total = hitCount + missCount;
+            return total == 0 ? 0f : (float) hitCount / total;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.reactnativeemojichatinput;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Process;
+import androidx.annotation.Nullable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 动图emoji解码后帧序列的磁盘缓存。
+ *
+ * 每张动图在每个绘制尺寸下保存一个帧文件，文件名由图片内容的hash和目标尺寸组成，图片内容变化后
+ * 自然不会命中旧文件，emoji配置变化时也不需要清空。帧文件头之后依次存放每帧的ARGB_8888原始像素，
+ * 读取时整体映射到内存，播放时直接从映射区域复制到帧缓冲，冷启动后不再需要重新解码GIF或动画WebP。
+ * 首次加载时只解码一遍：按目标尺寸展开的帧既交给span播放，也原样写入帧文件。
+ * 不再被引用的旧文件不会再更新使用时间，总大小超过上限时按最近使用时间淘汰。
+ *
+ * 文件格式（大端）：magic、格式版本、宽、高、帧数、每帧时长(ms)，之后为帧像素。
+ */
+final class EmojiFrameDiskCache {
+    private static final int MAGIC = 0x454D4A46; // "EMJF"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_INTS = 5;
+    private static final String DIR_NAME = "emoji_frames/v" + FORMAT_VERSION;
+    private static final String FILE_SUFFIX = ".frames";
+    private static final long MAX_DISK_BYTES = 32L * 1024 * 1024;
+    // 单个帧文件的上限，超过时只在内存中解码，避免帧数很多的大图占满磁盘配额
+    private static final long MAX_FILE_BYTES = 4L * 1024 * 1024;
+
+    private static volatile EmojiFrameDiskCache instance;
+
+    private final Context context;
+    private final File directory;
+    // 帧文件只在这一个后台线程上写入和淘汰
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, "emoji-frame-io"));
+    // 图片路径到内容hash的映射，每张图片在进程内只计算一次
+    private final Map<String, String> assetHashes = new ConcurrentHashMap<>();
+
+    static EmojiFrameDiskCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (EmojiFrameDiskCache.class) {
+                if (instance == null) {
+                    Context appContext = context.getApplicationContext();
+                    instance = new EmojiFrameDiskCache(appContext, new File(appContext.getCacheDir(), DIR_NAME));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private EmojiFrameDiskCache(Context context, File directory) {
+        this.context = context;
+        this.directory = directory;
+    }
+
+    /**
+     * 打开已缓存的帧序列，没有缓存或文件损坏时返回null。在加载线程调用
+     */
+    @Nullable
+    AnimatedEmojiFrames.FrameSource open(String imagePath, int width, int height) {
+        File file = getFile(imagePath, width, height);
+        if (file == null || !file.isFile()) return null;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            // 关闭文件后映射仍然有效
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            PixelFrameSource source = PixelFrameSource.map(buffer, width, height);
+            if (source == null) {
+                file.delete();
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return source;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 把动图的全部帧按目标尺寸展开到一块连续的像素缓冲，格式与帧文件的像素部分相同。
+     * 只有一帧或超过单个帧文件上限时返回null，调用方继续使用流式解码的来源。在加载线程调用
+     */
+    @Nullable
+    static PixelFrameSource decodeFrames(AnimatedEmojiFrames.FrameSource source, int width, int height) {
+        int frameCount = source.getFrameCount();
+        long frameBytes = (long) width * height * 4;
+        if (frameCount <= 1 || frameBytes * frameCount > MAX_FILE_BYTES) return null;
+
+        Bitmap decoded = null;
+        Bitmap scaled = null;
+        try {
+            decoded = Bitmap.createBitmap(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+            // 降采样解码的尺寸不小于目标尺寸，不一致时再缩放一次
+            boolean needsScale = decoded.getWidth() != width || decoded.getHeight() != height;
+            scaled = needsScale ? Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888) : decoded;
+            Canvas canvas = needsScale ? new Canvas(scaled) : null;
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            Rect dst = new Rect(0, 0, width, height);
+
+            ByteBuffer pixels = ByteBuffer.allocateDirect((int) (frameBytes * frameCount));
+            int[] durations = new int[frameCount];
+            for (int i = 0; i < frameCount; i++) {
+                durations[i] = source.getFrameDuration(i);
+                source.readFrame(i, decoded);
+                if (canvas != null) {
+                    scaled.eraseColor(0);
+                    canvas.drawBitmap(decoded, null, dst, paint);
+                }
+                pixels.limit((int) (frameBytes * (i + 1)));
+                scaled.copyPixelsToBuffer(pixels);
+            }
+            pixels.clear();
+            return new PixelFrameSource(pixels, width, height, durations, 0, false);
+        } catch (Exception | OutOfMemoryError e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (scaled != null && scaled != decoded) scaled.recycle();
+            if (decoded != null) decoded.recycle();
+        }
+    }
+
+    /**
+     * 把首次加载时展开的帧写入帧文件，已存在时跳过。写入在单独的IO线程上排队执行，
+     * 不占用加载和渲染线程，也不会因为队列已满退回调用线程
+     */
+    void write(String imagePath, PixelFrameSource frames) {
+        // 像素只在展开时写入，之后只读；写入使用独立的视图，不影响播放时的读取
+        ByteBuffer pixels = frames.pixels.duplicate();
+        int[] durations = frames.durations;
+        int width = frames.width;
+        int height = frames.height;
+        ioExecutor.execute(() -> writeFile(imagePath, width, height, durations, pixels));
+    }
+
+    private void writeFile(String imagePath, int width, int height, int[] durations, ByteBuffer pixels) {
+        File file = getFile(imagePath, width, height);
+        if (file == null || file.isFile()) return;
+        if (!directory.isDirectory() && !directory.mkdirs()) return;
+
+        File temp = new File(directory, file.getName() + ".tmp");
+        try {
+            ByteBuffer header = ByteBuffer.allocate((HEADER_INTS + durations.length) * 4).order(ByteOrder.BIG_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(width).putInt(height).putInt(durations.length);
+            for (int duration : durations) {
+                header.putInt(duration);
+            }
+            header.flip();
+            try (FileOutputStream output = new FileOutputStream(temp)) {
+                FileChannel channel = output.getChannel();
+                writeFully(channel, header);
+                writeFully(channel, pixels);
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+            trimToSize();
+        } catch (Exception e) {
+            e.printStackTrace();
+            temp.delete();
+        }
+    }
+
+    @Nullable
+    private File getFile(String imagePath, int width, int height) {
+        String hash = getAssetHash(imagePath);
+        if (hash == null) return null;
+        return new File(directory, hash + "_" + width + "x" + height + FILE_SUFFIX);
+    }
+
+    @Nullable
+    private String getAssetHash(String imagePath) {
+        String hash = assetHashes.get(imagePath);
+        if (hash != null) return hash;
+        try (InputStream input = context.getAssets().open("emoji/" + imagePath)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder builder = new StringBuilder();
+            byte[] bytes = digest.digest();
+            // 前8字节足以区分同一应用内的emoji图片
+            for (int i = 0; i < 8; i++) {
+                builder.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(bytes[i] & 0xF, 16));
+            }
+            hash = builder.toString();
+            assetHashes.put(imagePath, hash);
+            return hash;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 总大小超过上限时按最近使用时间删除，直到降到上限的3/4
+     */
+    private void trimToSize() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) return;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_DISK_BYTES) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= MAX_DISK_BYTES * 3 / 4) break;
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 从连续的像素缓冲读取帧：首次解码时展开在堆外内存中，之后映射帧文件，像素位于页缓存中，
+     * 由系统按需换入换出，不占用堆内存
+     */
+    static final class PixelFrameSource implements AnimatedEmojiFrames.FrameSource {
+        // 展开或映射后不再修改，写入帧文件时从这里创建独立的视图
+        final ByteBuffer pixels;
+        final int width;
+        final int height;
+        final int[] durations;
+        private final int pixelOffset;
+        private final int frameBytes;
+        private final boolean mapped;
+        // 复用同一个视图读取每一帧，播放时不分配对象
+        @Nullable
+        private ByteBuffer reader;
+
+        private PixelFrameSource(ByteBuffer pixels, int width, int height, int[] durations, int pixelOffset,
+                                 boolean mapped) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.durations = durations;
+            this.pixelOffset = pixelOffset;
+            this.frameBytes = width * height * 4;
+            this.mapped = mapped;
+            this.reader = pixels.duplicate();
+        }
+
+        /**
+         * 校验帧文件的文件头和文件长度，不匹配时返回null
+         */
+        @Nullable
+        static PixelFrameSource map(MappedByteBuffer buffer, int width, int height) {
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.capacity() < HEADER_INTS * 4) return null;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) return null;
+            if (buffer.getInt(8) != width || buffer.getInt(12) != height) return null;
+            int frameCount = buffer.getInt(16);
+            if (frameCount <= 0) return null;
+            int pixelOffset = (HEADER_INTS + frameCount) * 4;
+            if ((long) buffer.capacity() != pixelOffset + (long) width * height * 4 * frameCount) return null;
+            int[] durations = new int[frameCount];
+            for (int i = 0; i < frameCount; i++) {
+                durations[i] = buffer.getInt((HEADER_INTS + i) * 4);
+            }
+            return new PixelFrameSource(buffer, width, height, durations, pixelOffset, true);
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getFrameCount() {
+            return durations.length;
+        }
+
+        @Override
+        public int getFrameDuration(int index) {
+            return durations[index];
+        }
+
+        @Override
+        public void readFrame(int index, Bitmap target) {
+            ByteBuffer buffer = reader;
+            if (buffer == null) return;
+            int start = pixelOffset + index * frameBytes;
+            buffer.limit(buffer.capacity());
+            buffer.position(start);
+            buffer.limit(start + frameBytes);
+            target.copyPixelsFromBuffer(buffer);
+        }
+
+        @Override
+        public long getByteCount() {
+            return mapped ? 0 : pixels.capacity();
+        }
+
+        @Override
+        public void recycle() {
+            // 堆外缓冲和映射区域在没有引用后由GC释放
+            reader = null;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.reactnativeemojichatinput;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import androidx.annotation.Nullable;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.request.FutureTarget;
+import pl.droidsonroids.gif.GifAnimationMetaData;
+import pl.droidsonroids.gif.GifDecoder;
+import pl.droidsonroids.gif.GifOptions;
+import pl.droidsonroids.gif.InputSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * emoji图片的统一异步加载器，静态图片和动图都在后台线程解码。
+ * 静态图片交给Glide，GIF由GifDecoder、动画WebP由WebpFrameSource解码为帧序列，不使用各自带定时器的drawable。
+ *
+ * 任务按优先级排队：已经绘制到屏幕上的emoji最先加载，只参与了测量的其次，预加载最后。
+ * 解码结果写入缓存条目后切回主线程，只重绘使用该条目的span所在的行。
+ */
+final class EmojiImageLoader {
+    static final int PRIORITY_VISIBLE = 0;
+    static final int PRIORITY_NORMAL = 1;
+    static final int PRIORITY_PREFETCH = 2;
+
+    private static final int THREAD_COUNT = 2;
+
+    private static volatile EmojiImageLoader instance;
+
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicLong sequence = new AtomicLong();
+
+    static EmojiImageLoader getInstance() {
+        if (instance == null) {
+            synchronized (EmojiImageLoader.class) {
+                if (instance == null) {
+                    instance = new EmojiImageLoader();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private EmojiImageLoader() {
+        executor = new ThreadPoolExecutor(
+            THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(),
+            new LoaderThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    void load(Context context, EmojiDrawableCache.Entry entry, int priority) {
+        LoadTask task = new LoadTask(context.getApplicationContext(), entry, priority, sequence.getAndIncrement());
+        entry.loadTask = task;
+        executor.execute(task);
+    }
+
+    /**
+     * 提高尚未开始的加载任务的优先级，只能在主线程调用
+     */
+    void raisePriority(EmojiDrawableCache.Entry entry, int priority) {
+        LoadTask task = entry.loadTask;
+        if (task == null || task.priority <= priority) return;
+        // 队列按优先级排序，必须先移出再修改
+        if (executor.getQueue().remove(task)) {
+            task.priority = priority;
+            executor.execute(task);
+        } else {
+            task.priority = priority;
+        }
+    }
+
+    /**
+     * 条目被淘汰时取消还在排队的任务
+     */
+    void cancel(EmojiDrawableCache.Entry entry) {
+        LoadTask task = entry.loadTask;
+        if (task != null) {
+            executor.getQueue().remove(task);
+        }
+    }
+
+    private void decode(Context context, EmojiDrawableCache.Entry entry) {
+        // 检查文件扩展名以确定是否为动画格式
+        String extension = getFileExtension(entry.imagePath).toLowerCase();
+        long startNanos = System.nanoTime();
+        String format = extension;
+        try {
+            if (extension.equals("gif") || extension.equals("webp")) {
+                try {
+                    if (decodeAnimated(context, entry, extension)) {
+                        format = "frames";
+                    }
+                    return;
+                } catch (IOException e) {
+                    // 静态WebP或解码失败时退回Glide按静态图片加载
+                }
+            }
+            decodeStatic(context, entry);
+        } finally {
+            // 按格式分别统计，磁盘帧缓存命中单独计为frames
+            EmojiPerfStats.getInstance().record(EmojiPerfStats.IMAGE_DECODE_PREFIX + format, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * 返回是否直接使用了磁盘上的帧缓存
+     */
+    private boolean decodeAnimated(Context context, EmojiDrawableCache.Entry entry, String extension) throws IOException {
+        // 优先使用磁盘上按该尺寸预解码的帧序列，直接映射文件，不需要再解码GIF/WebP
+        EmojiFrameDiskCache diskCache = EmojiFrameDiskCache.getInstance(context);
+        AnimatedEmojiFrames.FrameSource cached = diskCache.open(entry.imagePath, entry.width, entry.height);
+        if (cached != null) {
+            AnimatedEmojiFrames frames = new AnimatedEmojiFrames(cached);
+            frames.setBounds(0, 0, entry.width, entry.height);
+            deliver(context, entry, frames, frames.isAnimated(), null);
+            return true;
+        }
+
+        // 只解码帧序列，不创建自带定时器的GifDrawable/AnimatedImageDrawable，播放统一由EmojiAnimationClock驱动
+        String assetPath = "emoji/" + entry.imagePath;
+        AnimatedEmojiFrames.FrameSource source = extension.equals("webp")
+            ? WebpFrameSource.create(readAsset(context, assetPath), entry.width, entry.height)
+            : new AnimatedEmojiFrames.GifFrameSource(openGif(context, assetPath, entry));
+        // 只解码这一遍：按目标尺寸展开的帧交给span播放，同一份像素再写入帧文件。
+        // WebP展开后也不必在每次回到第0帧时重新合成整个序列
+        EmojiFrameDiskCache.PixelFrameSource pixels = EmojiFrameDiskCache.decodeFrames(source, entry.width, entry.height);
+        if (pixels != null) {
+            source.recycle();
+            source = pixels;
+        }
+        AnimatedEmojiFrames frames = new AnimatedEmojiFrames(source);
+        frames.setBounds(0, 0, entry.width, entry.height);
+        deliver(context, entry, frames, frames.isAnimated(), null);
+        if (pixels != null && !entry.recycled) {
+            // 已经交付给span后再写磁盘，下次冷启动直接映射
+            diskCache.write(entry.imagePath, pixels);
+        }
+        return false;
+    }
+
+    private static GifDecoder openGif(Context context, String assetPath, EmojiDrawableCache.Entry entry) throws IOException {
+        // 先只读取尺寸，按目标尺寸降采样解码，帧缓冲不再按原图分配
+        GifAnimationMetaData metaData = new GifAnimationMetaData(context.getAssets(), assetPath);
+        GifOptions options = new GifOptions();
+        options.setInSampleSize(computeSampleSize(metaData.getWidth(), metaData.getHeight(), entry.width, entry.height));
+        return new GifDecoder(new InputSource.AssetSource(context.getAssets(), assetPath), options);
+    }
+
+    private static byte[] readAsset(Context context, String assetPath) throws IOException {
+        try (InputStream input = context.getAssets().open(assetPath)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(input.available(), 4096));
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    private void decodeStatic(Context context, EmojiDrawableCache.Entry entry) {
+        // 直接解码到绘制尺寸；JPG没有透明通道，使用RGB_565减半内存
+        DecodeFormat format = isOpaqueFormat(entry.imagePath) ? DecodeFormat.PREFER_RGB_565 : DecodeFormat.PREFER_ARGB_8888;
+        // 使用Application级别的Glide请求，避免Activity销毁时回收仍被其他页面共享的图片
+        FutureTarget<Drawable> target = Glide.with(context)
+            .asDrawable()
+            .load("file:///android_asset/emoji/" + entry.imagePath)
+            .override(entry.width, entry.height)
+            .format(format)
+            .submit(entry.width, entry.height);
+        try {
+            Drawable drawable = target.get();
+            drawable.setBounds(0, 0, entry.width, entry.height);
+            deliver(context, entry, drawable, false, target);
+        } catch (Exception e) {
+            e.printStackTrace();
+            entry.failed = true;
+            EmojiPerfStats.getInstance().increment(EmojiPerfStats.IMAGE_LOAD_FAILED);
+            mainHandler.post(() -> Glide.with(context).clear(target));
+        }
+    }
+
+    /**
+     * 在条目锁内写入结果，与淘汰互斥：条目已被回收时直接释放新解码的资源
+     */
+    private void deliver(Context context, EmojiDrawableCache.Entry entry, Drawable drawable, boolean animated,
+                         @Nullable FutureTarget<Drawable> target) {
+        synchronized (entry) {
+            if (!entry.recycled) {
+                entry.animated = animated;
+                entry.context = context;
+                entry.target = target;
+                entry.drawable = drawable;
+                mainHandler.post(() -> EmojiAnimationClock.getInstance().invalidateEntry(entry));
+                return;
+            }
+        }
+        if (drawable instanceof AnimatedEmojiFrames) {
+            mainHandler.post(((AnimatedEmojiFrames) drawable)::recycle);
+        }
+        if (target != null) {
+            mainHandler.post(() -> Glide.with(context).clear(target));
+        }
+    }
+
+    /**
+     * 不小于目标尺寸的最大2的幂降采样倍数，剩余的缩放在绘制时完成
+     */
+    static int computeSampleSize(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) return sampleSize;
+        while (sourceWidth / (sampleSize * 2) >= targetWidth && sourceHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static boolean isOpaqueFormat(String imagePath) {
+        String extension = getFileExtension(imagePath).toLowerCase();
+        return extension.equals("jpg") || extension.equals("jpeg");
+    }
+
+    private static String getFileExtension(String fileName) {
+        int lastDotIndex = fileName.lastIndexOf('.');
+        if (lastDotIndex > 0 && lastDotIndex < fileName.length() - 1) {
+            return fileName.substring(lastDotIndex + 1);
+        }
+        return "";
+    }
+
+    /**
+     * 加载任务，优先级数值越小越先执行，同优先级按提交顺序
+     */
+    final class LoadTask implements Runnable, Comparable<LoadTask> {
+        final Context context;
+        final EmojiDrawableCache.Entry entry;
+        final long order;
+        volatile int priority;
+
+        LoadTask(Context context, EmojiDrawableCache.Entry entry, int priority, long order) {
+            this.context = context;
+            this.entry = entry;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            EmojiPerfStats stats = EmojiPerfStats.getInstance();
+            long startNanos = stats.begin("EmojiImageLoader.loadImage");
+            try {
+                if (!entry.recycled) {
+                    decode(context, entry);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                entry.failed = true;
+                stats.increment(EmojiPerfStats.IMAGE_LOAD_FAILED);
+            } finally {
+                entry.loadTask = null;
+                entry.finishLoading();
+                stats.end(EmojiPerfStats.IMAGE_LOAD, startNanos);
+            }
+        }
+
+        @Override
+        public int compareTo(LoadTask other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    private static final class LoaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "emoji-loader-" + count.getAndIncrement());
+        }
+    }
+}
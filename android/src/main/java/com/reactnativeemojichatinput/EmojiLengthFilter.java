@@ -0,0 +1,159 @@
+package com.reactnativeemojichatinput;
+
+import android.text.InputFilter;
+import android.text.Spanned;
+import androidx.annotation.Nullable;
+
+/**
+ * 按emoji计数的最大长度限制。
+ *
+ * 每个完整的[name]标记默认计为1个单位，可以配置为按标记的字符数计算；超出时截断插入的文本，
+ * 截断位置不会落在标记或代理对中间。输入框当前的长度由EmojiChatInputView在增删span时增量维护，
+ * 每次过滤只扫描插入的文本和被替换区域内的span，与文本总长度无关，超长粘贴在生成span之前就被截断。
+ */
+final class EmojiLengthFilter implements InputFilter {
+    interface Listener {
+        /**
+         * 插入的内容被截断时回调，长度都按单位计算
+         */
+        void onTruncate(int maxLength, int attemptedLength, int acceptedLength);
+    }
+
+    private final Listener listener;
+    private final SourceCounter counter = new SourceCounter();
+    private int maxLength = -1;
+    private boolean countEmojiAsOne = true;
+    @Nullable
+    private EmojiRegistry registry;
+    // 输入框中所有emoji span的(标记长度 - 1)之和，长度 = 字符数 - tokenSavings
+    private int tokenSavings = 0;
+
+    EmojiLengthFilter(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 小于0表示不限制
+     */
+    void setMaxLength(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    void setCountEmojiAsOne(boolean countEmojiAsOne) {
+        this.countEmojiAsOne = countEmojiAsOne;
+    }
+
+    void setRegistry(@Nullable EmojiRegistry registry) {
+        this.registry = registry;
+    }
+
+    void onTokenAdded(int tokenLength) {
+        tokenSavings += tokenLength - 1;
+    }
+
+    void onTokenRemoved(int tokenLength) {
+        tokenSavings -= tokenLength - 1;
+    }
+
+    /**
+     * 输入框中的emoji span被全部移除时调用
+     */
+    void resetTokenSavings() {
+        tokenSavings = 0;
+    }
+
+    @Override
+    public CharSequence filter(CharSequence source, int start, int end, Spanned dest, int dstart, int dend) {
+        if (maxLength < 0 || end <= start) return null;
+
+        int base;
+        if (countEmojiAsOne) {
+            // 被替换区域扩展到与之相交的span边界：相交的标记会被破坏，剩余字符按普通文本计算
+            int regionStart = dstart;
+            int regionEnd = dend;
+            int regionSavings = 0;
+            AnimatedEmojiSpan[] spans = dest.getSpans(dstart, dend, AnimatedEmojiSpan.class);
+            for (AnimatedEmojiSpan span : spans) {
+                int spanStart = dest.getSpanStart(span);
+                int spanEnd = dest.getSpanEnd(span);
+                if (spanStart < dend && spanEnd > dstart) {
+                    regionStart = Math.min(regionStart, spanStart);
+                    regionEnd = Math.max(regionEnd, spanEnd);
+                    regionSavings += spanEnd - spanStart - 1;
+                }
+            }
+            int destLength = dest.length() - tokenSavings;
+            int regionBefore = regionEnd - regionStart - regionSavings;
+            int regionAfter = (dstart - regionStart) + (regionEnd - dend);
+            base = destLength - regionBefore + regionAfter;
+        } else {
+            base = dest.length() - (dend - dstart);
+        }
+
+        int budget = maxLength - base;
+        counter.count(source, start, end, Math.max(0, budget));
+        if (counter.total <= budget) return null;
+
+        listener.onTruncate(maxLength, base + counter.total, base + counter.accepted);
+        if (counter.cut <= start) return "";
+        return source.subSequence(start, counter.cut);
+    }
+
+    /**
+     * 统计插入文本的单位数，并记录不超过预算的最长前缀的结束位置
+     */
+    private final class SourceCounter implements EmojiTokenScanner.Callback {
+        int total;
+        int accepted;
+        int cut;
+        private int budget;
+        private boolean full;
+
+        void count(CharSequence source, int start, int end, int budget) {
+            this.budget = budget;
+            total = 0;
+            accepted = 0;
+            cut = start;
+            full = false;
+            EmojiTokenScanner.scan(source, start, end, registry, this);
+        }
+
+        @Override
+        public void onText(CharSequence text, int start, int end) {
+            total += end - start;
+            if (full) return;
+            int room = budget - accepted;
+            if (end - start <= room) {
+                accepted += end - start;
+                cut = end;
+                return;
+            }
+            int stop = start + room;
+            // 不拆开代理对
+            if (stop > start && Character.isHighSurrogate(text.charAt(stop - 1))) {
+                stop--;
+            }
+            accepted += stop - start;
+            cut = stop;
+            full = true;
+        }
+
+        @Override
+        public void onEmoji(CharSequence text, int start, int end, int emojiId) {
+            if (emojiId == EmojiRegistry.NO_EMOJI) {
+                // 配置中没有的标记不会显示为emoji，按普通文本计算
+                onText(text, start, end);
+                return;
+            }
+            int units = countEmojiAsOne ? 1 : end - start;
+            total += units;
+            if (full) return;
+            if (units <= budget - accepted) {
+                accepted += units;
+                cut = end;
+            } else {
+                full = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.reactnativeemojichatinput;
+
+import android.graphics.Typeface;
+import android.text.Spanned;
+import android.util.LruCache;
+import androidx.annotation.Nullable;
+
+/**
+ * 已解析消息的LRU缓存。
+ *
+ * 以(配置版本, 文本, 字号, 字体)为key缓存构建好的不可变Spanned，FlatList中反复滚入滚出的同一条消息
+ * 重新绑定时直接命中缓存，不再重新扫描和创建span。缓存中的span被所有使用该消息的EmojiTextView共享，
+ * span本身只引用EmojiDrawableCache中的共享drawable。
+ */
+public class EmojiMessageCache {
+    private static final int DEFAULT_MAX_ENTRIES = 200;
+
+    private static volatile EmojiMessageCache instance;
+
+    private final Object lock = new Object();
+    private final LruCache<Key, Entry> entries = createCache(DEFAULT_MAX_ENTRIES);
+    private boolean enabled = true;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public static EmojiMessageCache getInstance() {
+        if (instance == null) {
+            synchronized (EmojiMessageCache.class) {
+                if (instance == null) {
+                    instance = new EmojiMessageCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static LruCache<Key, Entry> createCache(int maxEntries) {
+        return new LruCache<Key, Entry>(maxEntries) {
+            @Override
+            protected void entryRemoved(boolean evicted, Key key, Entry oldValue, Entry newValue) {
+                // 缓存不再持有这些span，仍在显示它们的view各自持有引用
+                oldValue.cached = false;
+                AnimatedEmojiSpan.releaseAll(oldValue.text);
+            }
+        };
+    }
+
+    @Nullable
+    public Entry get(Key key) {
+        synchronized (lock) {
+            if (!enabled) return null;
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * 放入缓存并返回实际生效的条目；并发构建同一条消息时保留先放入的那一份
+     */
+    public Entry put(Key key, Entry entry) {
+        synchronized (lock) {
+            if (!enabled) return entry;
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            AnimatedEmojiSpan.retainAll(entry.text);
+            entry.cached = true;
+            entries.put(key, entry);
+            return entry;
+        }
+    }
+
+    public boolean isEnabled() {
+        synchronized (lock) {
+            return enabled;
+        }
+    }
+
+    /**
+     * 设置最多缓存的消息条数，传0关闭缓存
+     */
+    public void setMaxSize(int maxEntries) {
+        synchronized (lock) {
+            if (maxEntries <= 0) {
+                enabled = false;
+                entries.evictAll();
+            } else {
+                enabled = true;
+                entries.resize(maxEntries);
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            entries.evictAll();
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(hitCount, missCount, entries.size(), enabled ? entries.maxSize() : 0);
+        }
+    }
+
+    /**
+     * 缓存key，字号和字体变化时同一文本需要重新构建
+     */
+    public static final class Key {
+        final int registryVersion;
+        final String text;
+        final float textSize;
+        @Nullable
+        final Typeface typeface;
+        private final int hash;
+
+        public Key(EmojiRegistry registry, String text, float textSize, @Nullable Typeface typeface) {
+            this.registryVersion = registry.getVersion();
+            this.text = text;
+            this.textSize = textSize;
+            this.typeface = typeface;
+            int h = registryVersion;
+            h = 31 * h + text.hashCode();
+            h = 31 * h + Float.floatToIntBits(textSize);
+            h = 31 * h + (typeface != null ? typeface.hashCode() : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash
+                && registryVersion == other.registryVersion
+                && textSize == other.textSize
+                && typeface == other.typeface
+                && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 缓存的解析结果，text为不可变的Spanned，可以被多个view同时使用
+     */
+    public static final class Entry {
+        final Spanned text;
+        final String plainText;
+        volatile boolean cached = false;
+
+        public Entry(Spanned text, String plainText) {
+            this.text = text;
+            this.plainText = plainText;
+        }
+    }
+
+    public static final class Stats {
+        public final long hitCount;
+        public final long missCount;
+        public final int size;
+        public final int maxSize;
+
+        Stats(long hitCount, long missCount, int size, int maxSize) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.size = size;
+            this.maxSize = maxSize;
+        }
+
+        public float getHitRate() {
+            long total = hitCount + missCount;
+            return total == 0 ? 0f : (float) hitCount / total;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.reactnativeemojichatinput;
+
+import android.os.Trace;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内的性能统计。
+ *
+ * 每个阶段的耗时同时写入android.os.Trace分段（在Perfetto/systrace中可见）和按名称区分的直方图，
+ * 直方图按1/4倍频程分桶，记录只做几次原子加法，可以在主线程的按键和绘制路径上常开。
+ * JS通过EmojiChatInputModule.getPerformanceStats读取快照，按机型上报p50/p99。
+ */
+final class EmojiPerfStats {
+    static final String INPUT_PARSE = "input.parse";
+    static final String INPUT_DRAW = "input.draw";
+    static final String TEXT_RENDER = "text.render";
+    static final String TEXT_PARSE = "text.parse";
+    static final String TEXT_DRAW = "text.draw";
+    static final String IMAGE_LOAD = "image.load";
+    // 后接图片格式，磁盘帧缓存命中时为frames
+    static final String IMAGE_DECODE_PREFIX = "image.decode.";
+    static final String ANIMATION_FRAME = "animation.frame";
+
+    static final String IMAGE_LOAD_FAILED = "image.loadFailed";
+
+    private static volatile EmojiPerfStats instance;
+
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    // 最近一帧中正在播放的动画emoji数量
+    private volatile int animatedLive = 0;
+    // 重置时记录的span创建总数，快照中只报告之后新建的数量
+    private volatile long spansBuiltBase = 0;
+
+    static EmojiPerfStats getInstance() {
+        if (instance == null) {
+            synchronized (EmojiPerfStats.class) {
+                if (instance == null) {
+                    instance = new EmojiPerfStats();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private EmojiPerfStats() {}
+
+    /**
+     * 开始一个阶段，返回起始时间；必须在同一线程上以end结束
+     */
+    long begin(String section) {
+        Trace.beginSection(section);
+        return System.nanoTime();
+    }
+
+    void end(String histogram, long startNanos) {
+        record(histogram, System.nanoTime() - startNanos);
+        Trace.endSection();
+    }
+
+    void record(String histogram, long nanos) {
+        Histogram target = histograms.get(histogram);
+        if (target == null) {
+            target = new Histogram();
+            Histogram existing = histograms.putIfAbsent(histogram, target);
+            if (existing != null) {
+                target = existing;
+            }
+        }
+        target.record(nanos);
+    }
+
+    void increment(String counter) {
+        AtomicLong target = counters.get(counter);
+        if (target == null) {
+            target = new AtomicLong();
+            AtomicLong existing = counters.putIfAbsent(counter, target);
+            if (existing != null) {
+                target = existing;
+            }
+        }
+        target.incrementAndGet();
+    }
+
+    void setAnimatedLive(int count) {
+        animatedLive = count;
+    }
+
+    void reset() {
+        histograms.clear();
+        counters.clear();
+        spansBuiltBase = AnimatedEmojiSpan.getCreatedCount();
+    }
+
+    Snapshot snapshot() {
+        Map<String, Histogram.Summary> histogramSummaries = new TreeMap<>();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            histogramSummaries.put(entry.getKey(), entry.getValue().summarize());
+        }
+        Map<String, Long> counterValues = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            counterValues.put(entry.getKey(), entry.getValue().get());
+        }
+        return new Snapshot(histogramSummaries, counterValues,
+            AnimatedEmojiSpan.getCreatedCount() - spansBuiltBase, animatedLive);
+    }
+
+    /**
+     * 耗时直方图，桶的上界按2^(1/4)递增，从1微秒到约16秒，百分位的误差不超过19%
+     */
+    static final class Histogram {
+        private static final int SUB_BUCKETS = 4;
+        private static final int MAX_LOG2 = 24;
+        private static final int BUCKET_COUNT = 1 + (MAX_LOG2 + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong sumNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            if (nanos < 0) return;
+            buckets.incrementAndGet(bucketIndex(nanos / 1000));
+            sumNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        static int bucketIndex(long micros) {
+            if (micros < 1) return 0;
+            int log2 = 63 - Long.numberOfLeadingZeros(micros);
+            if (log2 > MAX_LOG2) return BUCKET_COUNT - 1;
+            // 最高位之后的两位决定在本倍频程内的位置
+            int sub = log2 >= 2 ? (int) ((micros >>> (log2 - 2)) & 3) : (int) ((micros << (2 - log2)) & 3);
+            return 1 + log2 * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * 桶的上界（微秒）
+         */
+        static double bucketUpperMicros(int index) {
+            if (index == 0) return 1;
+            int log2 = (index - 1) / SUB_BUCKETS;
+            int sub = (index - 1) % SUB_BUCKETS;
+            return (1L << log2) * (1 + (sub + 1) / (double) SUB_BUCKETS);
+        }
+
+        Summary summarize() {
+            long[] counts = new long[BUCKET_COUNT];
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            double maxMs = maxNanos.get() / 1e6;
+            double meanMs = total > 0 ? sumNanos.get() / 1e6 / total : 0;
+            return new Summary(total, meanMs, percentile(counts, total, 0.5, maxMs),
+                percentile(counts, total, 0.9, maxMs), percentile(counts, total, 0.99, maxMs), maxMs);
+        }
+
+        private static double percentile(long[] counts, long total, double fraction, double maxMs) {
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperMicros(i) / 1000, maxMs);
+                }
+            }
+            return maxMs;
+        }
+
+        static final class Summary {
+            final long count;
+            final double meanMs;
+            final double p50Ms;
+            final double p90Ms;
+            final double p99Ms;
+            final double maxMs;
+
+            Summary(long count, double meanMs, double p50Ms, double p90Ms, double p99Ms, double maxMs) {
+                this.count = count;
+                this.meanMs = meanMs;
+                this.p50Ms = p50Ms;
+                this.p90Ms = p90Ms;
+                this.p99Ms = p99Ms;
+                this.maxMs = maxMs;
+            }
+        }
+    }
+
+    static final class Snapshot {
+        final Map<String, Histogram.Summary> histograms;
+        final Map<String, Long> counters;
+        final long spansBuilt;
+        final int animatedLive;
+
+        Snapshot(Map<String, Histogram.Summary> histograms, Map<String, Long> counters, long spansBuilt, int animatedLive) {
+            this.histograms = histograms;
+            this.counters = counters;
+            this.spansBuilt = spansBuilt;
+            this.animatedLive = animatedLive;
+        }
+    }
+}
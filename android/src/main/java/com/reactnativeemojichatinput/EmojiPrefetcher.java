@@ -0,0 +1,121 @@
+package com.reactnativeemojichatinput;
+
+import android.content.Context;
+import android.text.TextPaint;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在后台预先解码指定emoji，使首次渲染直接命中EmojiDrawableCache。
+ *
+ * 按字号计算出与AnimatedEmojiSpan完全一致的像素尺寸后以最低优先级提交加载，屏幕上正在显示的emoji
+ * 仍然先加载。预加载的总字节数不超过预算，也不超过空闲缓存的容量，避免预加载的条目互相淘汰。
+ * 已经在精灵图集中的静态emoji不需要预加载，直接计入已完成的数量。
+ * 调用方不会被阻塞：等图集加载完成后在后台线程计算尺寸并提交加载。
+ */
+final class EmojiPrefetcher {
+    interface Listener {
+        void onProgress(int loaded, int total);
+
+        void onComplete(int loaded, int total, int skipped);
+    }
+
+    private EmojiPrefetcher() {}
+
+    /**
+     * @param names 需要预加载的emoji名称，为空时预加载配置中的全部emoji
+     * @param fontSizes 会用到的字号（sp）
+     * @param paint 与显示消息的view字体一致的画笔，只按fontSizes替换字号
+     * @param budgetBytes 预加载的最大字节数，小于等于0时只受缓存容量限制
+     */
+    static void prefetch(Context context, EmojiRegistry registry, List<String> names, float[] fontSizes,
+                         TextPaint paint, long budgetBytes, Listener listener) {
+        EmojiAtlas atlas = EmojiAtlas.getInstance(context);
+        // 图集加载完成后才能判断哪些emoji不需要预加载，计划放到后台线程，不占用调用线程
+        atlas.whenLoaded(() -> EmojiRenderExecutor.get().execute(
+            () -> planAndLoad(context, atlas, registry, names, fontSizes, paint, budgetBytes, listener)));
+    }
+
+    private static void planAndLoad(Context context, EmojiAtlas atlas, EmojiRegistry registry, List<String> names,
+                                    float[] fontSizes, TextPaint paint, long budgetBytes, Listener listener) {
+        EmojiDrawableCache cache = EmojiDrawableCache.getInstance();
+        long budget = cache.getStats().maxSizeBytes;
+        if (budgetBytes > 0) {
+            budget = Math.min(budget, budgetBytes);
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        if (names.isEmpty()) {
+            for (int id = 0; id < registry.size(); id++) {
+                ids.add(id);
+            }
+        } else {
+            for (String name : names) {
+                int id = registry.getId(name);
+                if (id != EmojiRegistry.NO_EMOJI) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        // 画笔的字体与span测量时相同，逐个替换字号得到实际解码尺寸
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        List<String> paths = new ArrayList<>();
+        List<int[]> sizes = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int skipped = 0;
+        int inAtlas = 0;
+        long plannedBytes = 0;
+        for (float fontSize : fontSizes) {
+            paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, fontSize, metrics));
+            for (int id : ids) {
+                String imagePath = registry.getImagePath(id);
+                AnimatedEmojiSpan.Geometry geometry = new AnimatedEmojiSpan.Geometry(paint, registry.getWidth(id), registry.getHeight(id));
+                if (!seen.add(imagePath + '@' + geometry.width + 'x' + geometry.height)) continue;
+                if (atlas.getSprite(imagePath) != null) {
+                    // 图集中的emoji已经可以直接绘制
+                    inAtlas++;
+                    continue;
+                }
+                long bytes = (long) geometry.width * geometry.height * 4;
+                if (plannedBytes + bytes > budget) {
+                    skipped++;
+                    continue;
+                }
+                plannedBytes += bytes;
+                paths.add(imagePath);
+                sizes.add(new int[] {geometry.width, geometry.height});
+            }
+        }
+
+        int total = inAtlas + paths.size();
+        if (paths.isEmpty()) {
+            listener.onComplete(inAtlas, total, skipped);
+            return;
+        }
+        if (inAtlas > 0) {
+            listener.onProgress(inAtlas, total);
+        }
+        AtomicInteger loaded = new AtomicInteger(inAtlas);
+        int skippedCount = skipped;
+        for (int i = 0; i < paths.size(); i++) {
+            int[] size = sizes.get(i);
+            EmojiDrawableCache.Entry entry = cache.acquire(context, paths.get(i), size[0], size[1],
+                EmojiImageLoader.PRIORITY_PREFETCH);
+            // 加载完成前保持引用，完成后释放进入空闲缓存，等待span命中
+            entry.whenLoaded(() -> {
+                cache.release(entry);
+                int count = loaded.incrementAndGet();
+                listener.onProgress(count, total);
+                if (count == total) {
+                    listener.onComplete(count, total, skippedCount);
+                }
+            });
+        }
+    }
+}
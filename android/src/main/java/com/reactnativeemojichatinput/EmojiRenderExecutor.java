@@ -0,0 +1,51 @@
+package com.reactnativeemojichatinput;
+
+import android.os.Process;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台解析emoji文本、构建span和预计算文本布局使用的有界线程池。
+ *
+ * 队列满时由提交任务的线程直接执行，退化为原来的同步渲染，保证文本不会丢失。
+ */
+final class EmojiRenderExecutor {
+    private static final int THREAD_COUNT = 2;
+    private static final int QUEUE_CAPACITY = 64;
+
+    private static volatile ThreadPoolExecutor instance;
+
+    private EmojiRenderExecutor() {}
+
+    static ThreadPoolExecutor get() {
+        if (instance == null) {
+            synchronized (EmojiRenderExecutor.class) {
+                if (instance == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                        THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+                        new RenderThreadFactory(),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+                    executor.allowCoreThreadTimeOut(true);
+                    instance = executor;
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static final class RenderThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "emoji-render-" + count.getAndIncrement());
+        }
+    }
+}
@@ -1,21 +1,33 @@
 package com.reactnativeemojichatinput;
 
 import android.content.Context;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.SpannableStringBuilder;
 import android.text.Spanned;
+import android.text.SpannedString;
 import android.util.AttributeSet;
 import android.util.TypedValue;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.AppCompatTextView;
-import org.json.JSONObject;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import androidx.core.text.PrecomputedTextCompat;
+import java.util.concurrent.FutureTask;
 
-public class EmojiTextView extends AppCompatTextView {
-    private JSONObject emojiConfig;
+public class EmojiTextView extends AppCompatTextView implements EmojiConfigStore.Host {
+    private EmojiRegistry emojiRegistry;
     private String textContent;
-    private Pattern emojiPattern = Pattern.compile("\\[([a-zA-Z0-9_]+)\\]");
+    @Nullable
+    private String plainText;
+    private boolean asyncRendering = false;
+    // 每次文本或配置变化时递增，用于丢弃view被复用前提交的过期渲染结果
+    private int renderGeneration = 0;
+    @Nullable
+    private FutureTask<?> pendingRender;
+    private boolean spansRetained = false;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final EmojiAnimationPolicy animationPolicy = new EmojiAnimationPolicy();
 
     public EmojiTextView(Context context) {
         super(context);
@@ -45,137 +57,296 @@ public class EmojiTextView extends AppCompatTextView {
 
     public void setEmojiConfig(String configJson) {
         try {
-            this.emojiConfig = new JSONObject(configJson);
-            updateText();
+            setEmojiRegistry(EmojiRegistry.fromJson(configJson));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 通过EmojiConfigStore中注册的配置id设置emoji配置
+     */
+    public void setEmojiConfigId(@Nullable String configId) {
+        EmojiConfigStore.getInstance().bind(this, configId);
+    }
+
+    @Override
+    public void setEmojiRegistry(@Nullable EmojiRegistry registry) {
+        // 相同配置重复设置时跳过重新渲染
+        if (registry == emojiRegistry) return;
+        EmojiRegistry previous = emojiRegistry;
+        this.emojiRegistry = registry;
+        // 配置热更新时，文本没有引用发生变化的emoji就保留当前显示的span，不重新渲染
+        if (previous != null && registry != null && !EmojiRegistry.diff(previous, registry).affects(textContent)) {
+            return;
+        }
+        updateText();
+    }
+
+    /**
+     * 开启后文本解析、span构建和PrecomputedText测量都在后台线程完成，结果再切回主线程显示
+     */
+    public void setAsyncRendering(boolean asyncRendering) {
+        this.asyncRendering = asyncRendering;
+    }
+
     private void updateText() {
-        if (textContent == null || emojiConfig == null) {
+        EmojiPerfStats stats = EmojiPerfStats.getInstance();
+        long startNanos = stats.begin("EmojiTextView.updateText");
+        try {
+            rebuildText();
+        } finally {
+            stats.end(EmojiPerfStats.TEXT_RENDER, startNanos);
+        }
+    }
+
+    private void rebuildText() {
+        // 即将替换文本，先释放旧span持有的共享drawable
+        cancelPendingRender();
+        releaseEmojiSpans();
+        plainText = null;
+
+        EmojiRegistry registry = emojiRegistry;
+        if (textContent == null || registry == null) {
             setText(textContent);
             return;
         }
 
+        // 同一条消息再次绑定时直接复用缓存中的解析结果
+        EmojiMessageCache.Key key = new EmojiMessageCache.Key(registry, textContent, getTextSize(), getTypeface());
+        EmojiMessageCache.Entry cached = EmojiMessageCache.getInstance().get(key);
+
+        // 命中缓存时span已经构建好，直接同步显示，只有未命中才清空并提交后台渲染
+        if (asyncRendering && cached == null) {
+            renderAsync(key, registry);
+            return;
+        }
+
         try {
-            SpannableStringBuilder builder = new SpannableStringBuilder();
-            Matcher matcher = emojiPattern.matcher(textContent);
-            
-            int lastEnd = 0;
-            JSONObject emojis = emojiConfig.getJSONObject("emojis");
-            
-            while (matcher.find()) {
-                // 添加emoji前的文本
-                if (matcher.start() > lastEnd) {
-                    String beforeText = textContent.substring(lastEnd, matcher.start());
-                    builder.append(beforeText);
-                }
-                
-                String emojiName = matcher.group(1);
-                if (emojis.has(emojiName)) {
-                    JSONObject emoji = emojis.getJSONObject(emojiName);
-                    String imagePath = emoji.getString("image");
-                    int width = emoji.optInt("width", 24);
-                    int height = emoji.optInt("height", 24);
-                    
-                    // 创建emoji span
-                    AnimatedEmojiSpan span = new AnimatedEmojiSpan(getContext(), emojiName, imagePath, width, height);
-                    
-                    // 添加emoji占位符文本
-                    int spanStart = builder.length();
-                    builder.append("[" + emojiName + "]");
-                    int spanEnd = builder.length();
-                    
-                    // 设置span
-                    builder.setSpan(span, spanStart, spanEnd, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-                } else {
-                    // 如果找不到emoji，保留原始文本
-                    builder.append(matcher.group(0));
-                }
-                
-                lastEnd = matcher.end();
-            }
-            
-            // 添加剩余文本
-            if (lastEnd < textContent.length()) {
-                builder.append(textContent.substring(lastEnd));
-            }
-            
-            setText(builder);
+            EmojiMessageCache.Entry entry = cached != null ? cached : buildMessage(key, registry);
+            setText(entry.text);
+            plainText = entry.plainText;
+            retainEmojiSpans();
         } catch (Exception e) {
             e.printStackTrace();
             setText(textContent);
         }
     }
 
+    /**
+     * 单遍扫描：原文直接作为span的载体，同时收集纯文本，结果放入消息缓存
+     */
+    private EmojiMessageCache.Entry buildMessage(EmojiMessageCache.Key key, EmojiRegistry registry) {
+        EmojiPerfStats stats = EmojiPerfStats.getInstance();
+        long startNanos = stats.begin("EmojiTextView.buildMessage");
+        try {
+            SpannableStringBuilder builder = new SpannableStringBuilder(key.text);
+            SpannedTextCallback callback = new SpannedTextCallback(builder, registry, key.text.length());
+            EmojiTokenScanner.scan(key.text, registry, callback);
+            EmojiMessageCache.Entry entry = new EmojiMessageCache.Entry(new SpannedString(builder), callback.plainText.toString());
+            return EmojiMessageCache.getInstance().put(key, entry);
+        } finally {
+            stats.end(EmojiPerfStats.TEXT_PARSE, startNanos);
+        }
+    }
+
+    private void renderAsync(EmojiMessageCache.Key key, EmojiRegistry registry) {
+        final int generation = renderGeneration;
+        // 测量参数必须在主线程读取，后台线程按同样的参数预计算布局
+        final PrecomputedTextCompat.Params params = getTextMetricsParamsCompat();
+
+        // 清掉复用前的旧内容，避免结果返回前显示上一条消息
+        setText(null);
+
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            EmojiMessageCache.Entry entry;
+            try {
+                entry = buildMessage(key, registry);
+            } catch (Exception e) {
+                e.printStackTrace();
+                mainHandler.post(() -> applyRenderResult(generation, null, key.text));
+                return;
+            }
+            // PrecomputedText包装的是文本副本，缓存中的Spanned本身不会被view修改
+            CharSequence result = entry.text;
+            try {
+                result = PrecomputedTextCompat.create(entry.text, params);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            CharSequence rendered = result;
+            mainHandler.post(() -> applyRenderResult(generation, entry, rendered));
+        }, null);
+        pendingRender = task;
+        EmojiRenderExecutor.get().execute(task);
+    }
+
+    private void applyRenderResult(int generation, @Nullable EmojiMessageCache.Entry entry, CharSequence rendered) {
+        if (generation != renderGeneration) {
+            // view已经换成了其他消息，未进入缓存的结果需要释放测量时获取的drawable
+            if (entry != null && !entry.cached) {
+                AnimatedEmojiSpan.releaseAll(rendered);
+            }
+            return;
+        }
+        pendingRender = null;
+        plainText = entry != null ? entry.plainText : null;
+        if (rendered instanceof PrecomputedTextCompat) {
+            try {
+                setPrecomputedText((PrecomputedTextCompat) rendered);
+                retainEmojiSpans();
+                return;
+            } catch (IllegalArgumentException e) {
+                // 提交后字体等参数发生了变化，退回普通setText
+                rendered = entry.text;
+            }
+        }
+        setText(rendered);
+        retainEmojiSpans();
+    }
+
+    /**
+     * 取消尚未完成的后台渲染，文本变化或view被回收时调用
+     */
+    public void cancelPendingRender() {
+        renderGeneration++;
+        FutureTask<?> task = pendingRender;
+        pendingRender = null;
+        if (task != null) {
+            task.cancel(false);
+            EmojiRenderExecutor.get().remove(task);
+        }
+    }
+
+    /**
+     * 扫描回调，为已知emoji设置span并同时拼接去掉标记后的纯文本
+     */
+    private class SpannedTextCallback implements EmojiTokenScanner.Callback {
+        final SpannableStringBuilder builder;
+        final EmojiRegistry registry;
+        final StringBuilder plainText;
+
+        SpannedTextCallback(SpannableStringBuilder builder, EmojiRegistry registry, int capacity) {
+            this.builder = builder;
+            this.registry = registry;
+            this.plainText = new StringBuilder(capacity);
+        }
+
+        @Override
+        public void onText(CharSequence text, int start, int end) {
+            plainText.append(text, start, end);
+        }
+
+        @Override
+        public void onEmoji(CharSequence text, int start, int end, int emojiId) {
+            // 找不到的emoji保留原始文本，不设置span
+            if (emojiId == EmojiRegistry.NO_EMOJI) return;
+            AnimatedEmojiSpan span = new AnimatedEmojiSpan(getContext(), registry.getName(emojiId),
+                registry.getImagePath(emojiId), registry.getWidth(emojiId), registry.getHeight(emojiId));
+            builder.setSpan(span, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        // 包含文本中所有emoji span的绘制
+        EmojiPerfStats stats = EmojiPerfStats.getInstance();
+        long startNanos = stats.begin("EmojiTextView.onDraw");
+        try {
+            super.onDraw(canvas);
+        } finally {
+            stats.end(EmojiPerfStats.TEXT_DRAW, startNanos);
+        }
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        startAllEmojiAnimations();
+        retainEmojiSpans();
+        startEmojiAnimations();
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
-        stopAllEmojiAnimations();
+        stopEmojiAnimations();
+        releaseEmojiSpans();
     }
 
     @Override
     protected void onWindowVisibilityChanged(int visibility) {
         super.onWindowVisibilityChanged(visibility);
         if (visibility == VISIBLE) {
-            resumeAllEmojiAnimations();
+            startEmojiAnimations();
         } else {
-            pauseAllEmojiAnimations();
+            stopEmojiAnimations();
         }
     }
 
-    private void startAllEmojiAnimations() {
-        if (getText() instanceof SpannableStringBuilder) {
-            SpannableStringBuilder builder = (SpannableStringBuilder) getText();
-            AnimatedEmojiSpan[] spans = builder.getSpans(0, builder.length(), AnimatedEmojiSpan.class);
-            for (AnimatedEmojiSpan span : spans) {
-                span.startAnimation();
-            }
-        }
+    /**
+     * 释放所有span对共享drawable的引用，view回收或销毁时调用
+     */
+    public void releaseEmojiSpans() {
+        if (!spansRetained) return;
+        spansRetained = false;
+        AnimatedEmojiSpan.releaseAll(getText());
     }
 
-    private void stopAllEmojiAnimations() {
-        if (getText() instanceof SpannableStringBuilder) {
-            SpannableStringBuilder builder = (SpannableStringBuilder) getText();
-            AnimatedEmojiSpan[] spans = builder.getSpans(0, builder.length(), AnimatedEmojiSpan.class);
-            for (AnimatedEmojiSpan span : spans) {
-                span.stopAnimation();
-            }
-        }
+    /**
+     * 当前显示的文本可能来自消息缓存并被多个view共享，绑定时对其中的span登记持有
+     */
+    private void retainEmojiSpans() {
+        if (spansRetained) return;
+        spansRetained = true;
+        AnimatedEmojiSpan.retainAll(getText());
     }
-    
-    private void pauseAllEmojiAnimations() {
-        if (getText() instanceof SpannableStringBuilder) {
-            SpannableStringBuilder builder = (SpannableStringBuilder) getText();
-            AnimatedEmojiSpan[] spans = builder.getSpans(0, builder.length(), AnimatedEmojiSpan.class);
-            for (AnimatedEmojiSpan span : spans) {
-                span.pauseAnimation();
-            }
-        }
+
+    /**
+     * 滚出可见区域的emoji是否暂停播放
+     */
+    public void setPauseAnimationsOffscreen(boolean pause) {
+        animationPolicy.setPauseWhenOffscreen(pause);
+        EmojiAnimationClock.getInstance().wakeUp();
     }
-    
-    private void resumeAllEmojiAnimations() {
-        if (getText() instanceof SpannableStringBuilder) {
-            SpannableStringBuilder builder = (SpannableStringBuilder) getText();
-            AnimatedEmojiSpan[] spans = builder.getSpans(0, builder.length(), AnimatedEmojiSpan.class);
-            for (AnimatedEmojiSpan span : spans) {
-                span.resumeAnimation();
-            }
-        }
+
+    /**
+     * 省电模式或过热时动图的最高帧率，0表示不限制
+     */
+    public void setLowPowerAnimationFps(int fps) {
+        animationPolicy.setLowPowerFrameRate(fps);
+        EmojiAnimationClock.getInstance().wakeUp();
+    }
+
+    /**
+     * 同一屏幕内同时播放的动图数量上限，0表示不限制
+     */
+    public void setMaxAnimatedEmojis(int maxAnimatedEmojis) {
+        animationPolicy.setMaxAnimatedEmojis(maxAnimatedEmojis);
+        EmojiAnimationClock.getInstance().wakeUp();
+    }
+
+    /**
+     * 在共享动画时钟上注册，之后文本中的动图随时钟逐帧播放
+     */
+    private void startEmojiAnimations() {
+        EmojiAnimationClock.getInstance().register(this, animationPolicy);
+    }
+
+    /**
+     * 从共享动画时钟注销，动图停在当前帧
+     */
+    private void stopEmojiAnimations() {
+        EmojiAnimationClock.getInstance().unregister(this);
     }
 
     public String getPlainText() {
         if (textContent == null) {
             return "";
         }
-        return emojiPattern.matcher(textContent).replaceAll("");
+        if (plainText == null) {
+            plainText = EmojiTokenScanner.getPlainText(textContent);
+        }
+        return plainText;
     }
 }
 
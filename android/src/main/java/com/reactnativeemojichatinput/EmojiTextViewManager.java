@@ -27,6 +27,14 @@ public class EmojiTextViewManager extends SimpleViewManager<EmojiTextView> {
         return new EmojiTextView(context);
     }
 
+    @Override
+    public void onDropViewInstance(@NonNull EmojiTextView view) {
+        super.onDropViewInstance(view);
+        EmojiConfigStore.getInstance().bind(view, null);
+        view.cancelPendingRender();
+        view.releaseEmojiSpans();
+    }
+
     @ReactProp(name = "text")
     public void setText(EmojiTextView view, @Nullable String text) {
         view.setTextContent(text);
@@ -36,14 +44,42 @@ public class EmojiTextViewManager extends SimpleViewManager<EmojiTextView> {
     public void setEmojiConfig(EmojiTextView view, @Nullable ReadableMap config) {
         if (config != null) {
             try {
-                String configJson = config.toString();
-                view.setEmojiConfig(configJson);
+                // 相同内容的配置在所有view间共享同一个注册表实例，只解析一次
+                view.setEmojiRegistry(EmojiRegistry.fromJson(config.toString()));
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
     }
 
+    /**
+     * 引用通过EmojiNativeManager.registerEmojiConfig注册的配置，不再为每个view传递完整配置
+     */
+    @ReactProp(name = "emojiConfigId")
+    public void setEmojiConfigId(EmojiTextView view, @Nullable String configId) {
+        view.setEmojiConfigId(configId);
+    }
+
+    @ReactProp(name = "asyncRendering")
+    public void setAsyncRendering(EmojiTextView view, boolean asyncRendering) {
+        view.setAsyncRendering(asyncRendering);
+    }
+
+    @ReactProp(name = "pauseAnimationsOffscreen", defaultBoolean = true)
+    public void setPauseAnimationsOffscreen(EmojiTextView view, boolean pause) {
+        view.setPauseAnimationsOffscreen(pause);
+    }
+
+    @ReactProp(name = "lowPowerAnimationFps", defaultInt = EmojiAnimationPolicy.DEFAULT_LOW_POWER_FRAME_RATE)
+    public void setLowPowerAnimationFps(EmojiTextView view, int fps) {
+        view.setLowPowerAnimationFps(fps);
+    }
+
+    @ReactProp(name = "maxAnimatedEmojis", defaultInt = EmojiAnimationPolicy.DEFAULT_MAX_ANIMATED_EMOJIS)
+    public void setMaxAnimatedEmojis(EmojiTextView view, int maxAnimatedEmojis) {
+        view.setMaxAnimatedEmojis(maxAnimatedEmojis);
+    }
+
     @ReactProp(name = "fontSize")
     public void setFontSize(EmojiTextView view, float fontSize) {
         view.setTextSize(TypedValue.COMPLEX_UNIT_SP, fontSize);
@@ -58,13 +94,19 @@ public class EmojiTextViewManager extends SimpleViewManager<EmojiTextView> {
 
     @ReactProp(name = "fontWeight")
     public void setFontWeight(EmojiTextView view, @Nullable String fontWeight) {
-        int typefaceStyle = Typeface.NORMAL;
+        view.setTypeface(view.getTypeface(), getTypefaceStyle(fontWeight));
+    }
+
+    /**
+     * fontWeight属性对应的字体样式，输入框和预加载使用同样的映射
+     */
+    static int getTypefaceStyle(@Nullable String fontWeight) {
         if ("bold".equals(fontWeight)) {
-            typefaceStyle = Typeface.BOLD;
+            return Typeface.BOLD;
         } else if ("italic".equals(fontWeight)) {
-            typefaceStyle = Typeface.ITALIC;
+            return Typeface.ITALIC;
         }
-        view.setTypeface(view.getTypeface(), typefaceStyle);
+        return Typeface.NORMAL;
     }
 
     @ReactProp(name = "textAlign")
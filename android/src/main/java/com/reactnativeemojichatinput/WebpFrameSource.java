@@ -0,0 +1,299 @@
+package com.reactnativeemojichatinput;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import androidx.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * 动画WebP的帧序列来源。
+ *
+ * 解析RIFF容器中的ANMF帧，把每帧的码流单独包装成一张静态WebP交给BitmapFactory解码，再按帧的偏移、
+ * 混合方式和处置方式合成到整张画布上。BitmapFactory从API 18起即可解码带透明通道的WebP，
+ * 不依赖API 28才有的ImageDecoder/AnimatedImageDrawable，播放仍由EmojiAnimationClock统一驱动。
+ * 帧只能按顺序合成，读取的不是下一帧时从第0帧重新合成。
+ */
+final class WebpFrameSource implements AnimatedEmojiFrames.FrameSource {
+    private static final int VP8X_FLAG_ALPHA = 0x10;
+    private static final int VP8X_FLAG_ANIMATION = 0x02;
+    private static final int ANMF_FLAG_DISPOSE = 0x01;
+    private static final int ANMF_FLAG_NO_BLEND = 0x02;
+
+    private final int width;
+    private final int height;
+    private final int sampleSize;
+    private final Frame[] frames;
+    private final long dataBytes;
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+    private final Paint paint = new Paint();
+    private final Paint clearPaint = new Paint();
+    private final Rect frameRect = new Rect();
+    // 复用的单帧解码缓冲，按画布大小分配，所有帧都不会超过画布
+    private Bitmap scratch;
+    @Nullable
+    private Bitmap composeTarget;
+    @Nullable
+    private Canvas composeCanvas;
+    private int composedIndex = -1;
+    private boolean recycled = false;
+
+    private WebpFrameSource(int canvasWidth, int canvasHeight, int sampleSize, Frame[] frames, long dataBytes) {
+        this.sampleSize = sampleSize;
+        this.width = (canvasWidth + sampleSize - 1) / sampleSize;
+        this.height = (canvasHeight + sampleSize - 1) / sampleSize;
+        this.frames = frames;
+        this.dataBytes = dataBytes;
+        clearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+        scratch = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+    }
+
+    /**
+     * 解析动画WebP，按不小于目标尺寸的2的幂降采样；不是动画WebP时抛出IOException，由调用方按静态图片加载
+     */
+    static WebpFrameSource create(byte[] data, int targetWidth, int targetHeight) throws IOException {
+        if (data.length < 12 || !isFourCc(data, 0, "RIFF") || !isFourCc(data, 8, "WEBP")) {
+            throw new IOException("Not a WebP file");
+        }
+        int end = (int) Math.min(data.length, 8L + readUInt32(data, 4));
+        int canvasWidth = 0;
+        int canvasHeight = 0;
+        boolean animated = false;
+        ArrayList<Frame> frames = new ArrayList<>();
+        long dataBytes = 0;
+
+        int offset = 12;
+        while (offset + 8 <= end) {
+            int size = (int) readUInt32(data, offset + 4);
+            int payload = offset + 8;
+            if (size < 0 || payload + size > end) break;
+            if (isFourCc(data, offset, "VP8X") && size >= 10) {
+                animated = (data[payload] & VP8X_FLAG_ANIMATION) != 0;
+                canvasWidth = 1 + readUInt24(data, payload + 4);
+                canvasHeight = 1 + readUInt24(data, payload + 7);
+            } else if (isFourCc(data, offset, "ANMF") && size >= 16) {
+                Frame frame = parseFrame(data, payload, size);
+                if (frame != null) {
+                    frames.add(frame);
+                    dataBytes += frame.data.length;
+                }
+            }
+            // 块按偶数字节对齐
+            offset = payload + size + (size & 1);
+        }
+
+        if (!animated || frames.isEmpty() || canvasWidth <= 0 || canvasHeight <= 0) {
+            throw new IOException("Not an animated WebP");
+        }
+        int sampleSize = EmojiImageLoader.computeSampleSize(canvasWidth, canvasHeight, targetWidth, targetHeight);
+        return new WebpFrameSource(canvasWidth, canvasHeight, sampleSize, frames.toArray(new Frame[0]), dataBytes);
+    }
+
+    /**
+     * ANMF块：帧偏移、尺寸、时长和标志位之后是该帧的ALPH/VP8/VP8L子块，重新包装成可以单独解码的WebP文件
+     */
+    @Nullable
+    private static Frame parseFrame(byte[] data, int payload, int size) throws IOException {
+        int x = 2 * readUInt24(data, payload);
+        int y = 2 * readUInt24(data, payload + 3);
+        int frameWidth = 1 + readUInt24(data, payload + 6);
+        int frameHeight = 1 + readUInt24(data, payload + 9);
+        int duration = readUInt24(data, payload + 12);
+        int flags = data[payload + 15] & 0xFF;
+
+        ByteArrayOutputStream bitstream = new ByteArrayOutputStream(size);
+        boolean hasAlpha = false;
+        boolean hasImage = false;
+        int offset = payload + 16;
+        int end = payload + size;
+        while (offset + 8 <= end) {
+            int chunkSize = (int) readUInt32(data, offset + 4);
+            int next = offset + 8 + chunkSize + (chunkSize & 1);
+            if (chunkSize < 0 || offset + 8 + chunkSize > end) break;
+            if (isFourCc(data, offset, "ALPH")) {
+                hasAlpha = true;
+            } else if (isFourCc(data, offset, "VP8 ") || isFourCc(data, offset, "VP8L")) {
+                hasImage = true;
+            } else {
+                // 未知子块不影响解码，直接跳过
+                offset = next;
+                continue;
+            }
+            bitstream.write(data, offset, Math.min(next, end) - offset);
+            offset = next;
+        }
+        if (!hasImage) return null;
+
+        // 有ALPH块时必须带VP8X头声明透明通道，否则BitmapFactory会忽略透明度
+        ByteArrayOutputStream file = new ByteArrayOutputStream(bitstream.size() + 30);
+        int riffSize = 4 + bitstream.size() + (hasAlpha ? 18 : 0);
+        file.write(new byte[] {'R', 'I', 'F', 'F'});
+        writeUInt32(file, riffSize);
+        file.write(new byte[] {'W', 'E', 'B', 'P'});
+        if (hasAlpha) {
+            file.write(new byte[] {'V', 'P', '8', 'X'});
+            writeUInt32(file, 10);
+            file.write(new byte[] {VP8X_FLAG_ALPHA, 0, 0, 0});
+            writeUInt24(file, frameWidth - 1);
+            writeUInt24(file, frameHeight - 1);
+        }
+        bitstream.writeTo(file);
+        return new Frame(file.toByteArray(), x, y, duration,
+            (flags & ANMF_FLAG_DISPOSE) != 0, (flags & ANMF_FLAG_NO_BLEND) == 0);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    @Override
+    public int getFrameDuration(int index) {
+        return frames[index].duration;
+    }
+
+    @Override
+    public void readFrame(int index, Bitmap target) {
+        if (recycled) return;
+        if (target != composeTarget) {
+            // 新的目标位图上没有之前合成的内容
+            composeTarget = target;
+            composeCanvas = new Canvas(target);
+            composedIndex = -1;
+        }
+        if (index == composedIndex) return;
+        int start = index > composedIndex ? composedIndex + 1 : 0;
+        for (int i = start; i <= index; i++) {
+            composeFrame(i);
+        }
+        composedIndex = index;
+    }
+
+    private void composeFrame(int index) {
+        Canvas canvas = composeCanvas;
+        if (index == 0) {
+            canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+        } else {
+            Frame previous = frames[index - 1];
+            if (previous.disposeToBackground) {
+                canvas.drawRect(previous.left, previous.top, previous.right, previous.bottom, clearPaint);
+            }
+        }
+
+        Frame frame = frames[index];
+        Bitmap decoded = decodeFrame(frame);
+        if (decoded == null) return;
+        // 记录采样后的实际区域，下一帧按它处置
+        frame.left = frame.x / sampleSize;
+        frame.top = frame.y / sampleSize;
+        frame.right = frame.left + decoded.getWidth();
+        frame.bottom = frame.top + decoded.getHeight();
+        frameRect.set(frame.left, frame.top, frame.right, frame.bottom);
+        if (!frame.blend) {
+            canvas.drawRect(frameRect, clearPaint);
+        }
+        canvas.drawBitmap(decoded, frame.left, frame.top, paint);
+    }
+
+    @Nullable
+    private Bitmap decodeFrame(Frame frame) {
+        options.inBitmap = scratch;
+        try {
+            Bitmap decoded = BitmapFactory.decodeByteArray(frame.data, 0, frame.data.length, options);
+            if (decoded != null) {
+                scratch = decoded;
+            }
+            return decoded;
+        } catch (IllegalArgumentException e) {
+            // 个别系统版本不能复用位图解码WebP，退回每帧分配
+            options.inBitmap = null;
+            Bitmap decoded = BitmapFactory.decodeByteArray(frame.data, 0, frame.data.length, options);
+            if (decoded != null) {
+                scratch.recycle();
+                scratch = decoded;
+            }
+            return decoded;
+        }
+    }
+
+    @Override
+    public long getByteCount() {
+        return dataBytes + scratch.getAllocationByteCount();
+    }
+
+    @Override
+    public void recycle() {
+        recycled = true;
+        composeTarget = null;
+        composeCanvas = null;
+        scratch.recycle();
+    }
+
+    private static boolean isFourCc(byte[] data, int offset, String fourCc) {
+        for (int i = 0; i < 4; i++) {
+            if (data[offset + i] != fourCc.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int readUInt24(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16;
+    }
+
+    private static long readUInt32(byte[] data, int offset) {
+        return readUInt24(data, offset) | (long) (data[offset + 3] & 0xFF) << 24;
+    }
+
+    private static void writeUInt24(ByteArrayOutputStream output, int value) {
+        output.write(value & 0xFF);
+        output.write((value >> 8) & 0xFF);
+        output.write((value >> 16) & 0xFF);
+    }
+
+    private static void writeUInt32(ByteArrayOutputStream output, int value) {
+        writeUInt24(output, value);
+        output.write((value >> 24) & 0xFF);
+    }
+
+    private static final class Frame {
+        final byte[] data;
+        final int x;
+        final int y;
+        final int duration;
+        final boolean disposeToBackground;
+        final boolean blend;
+        // 采样后在画布上的区域，合成时写入
+        int left;
+        int top;
+        int right;
+        int bottom;
+
+        Frame(byte[] data, int x, int y, int duration, boolean disposeToBackground, boolean blend) {
+            this.data = data;
+            this.x = x;
+            this.y = y;
+            this.duration = duration;
+            this.disposeToBackground = disposeToBackground;
+            this.blend = blend;
+        }
+    }
+}
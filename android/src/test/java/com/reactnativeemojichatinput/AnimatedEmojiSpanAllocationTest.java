@@ -0,0 +1,83 @@
+package com.reactnativeemojichatinput;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Looper;
+import android.text.TextPaint;
+import androidx.test.core.app.ApplicationProvider;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AnimatedEmojiSpan的测量和绘制在尺寸缓存命中后不分配对象
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class AnimatedEmojiSpanAllocationTest {
+    private static final int OPERATIONS = 1000;
+    // 打包的动画WebP，不进入图集，走EmojiDrawableCache加载
+    private static final String WEBP = "v2-1f7aa843a3fdba53a0e9bc68df43c900_b.webp";
+
+    @After
+    public void tearDown() {
+        EmojiDrawableCache.getInstance().trimToSize(0);
+    }
+
+    @Test
+    public void measureAndDrawAllocateNothing() throws InterruptedException {
+        EmojiPerfHarness.awaitAtlas();
+        AnimatedEmojiSpan span = new AnimatedEmojiSpan(ApplicationProvider.getApplicationContext(),
+            "wave", WEBP, 24, 24);
+        TextPaint paint = new TextPaint();
+        paint.setTextSize(48f);
+        Paint.FontMetricsInt metrics = new Paint.FontMetricsInt();
+        Bitmap bitmap = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        // 首次测量计算尺寸并从缓存获取条目，等图片解码完成
+        span.getSize(paint, "[wave]", 0, 6, metrics);
+        EmojiDrawableCache.Entry entry = span.getCacheEntry();
+        assertNotNull("span was not measured", entry);
+        CountDownLatch loaded = new CountDownLatch(1);
+        entry.whenLoaded(loaded::countDown);
+        assertTrue("image did not load", loaded.await(10, TimeUnit.SECONDS));
+        shadowOf(Looper.getMainLooper()).idle();
+        assertNotNull("WebP was not decoded into frames", span.getAnimatedFrames());
+
+        EmojiPerfHarness harness = new EmojiPerfHarness();
+        try {
+            // 与其他场景一样先完整运行一遍，排除类加载和首次调用本地绘制的分配
+            measureAndDraw(span, paint, metrics, canvas);
+            EmojiPerfHarness.Result result = harness.measure("spanDraw",
+                () -> measureAndDraw(span, paint, metrics, canvas));
+            // 一直绘制的是解码出的帧，而不是加载中的占位
+            assertNotNull(span.getAnimatedFrames());
+            assertTrue(bitmap.getPixel(12, 30) != 0);
+            EmojiPerfHarness.assertWithinBudget(result);
+        } finally {
+            harness.close();
+            span.release();
+        }
+    }
+
+    private static int measureAndDraw(AnimatedEmojiSpan span, TextPaint paint, Paint.FontMetricsInt metrics,
+                                      Canvas canvas) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            span.getSize(paint, "[wave]", 0, 6, metrics);
+            span.draw(canvas, "[wave]", 0, 6, i % 8, 0, 40, 64, paint);
+        }
+        return OPERATIONS;
+    }
+}
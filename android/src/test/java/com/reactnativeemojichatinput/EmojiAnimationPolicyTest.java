@@ -0,0 +1,131 @@
+package com.reactnativeemojichatinput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.text.Spanned;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.RobolectricTestRunner;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 动画策略对打包的动画WebP生效：可见时随时钟换帧，滚出可见区域时暂停，同屏数量超过上限的停在当前帧。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class EmojiAnimationPolicyTest {
+    // 打包的动画WebP，两帧，每帧10秒
+    private static final String CONFIG_JSON = "{\"version\":\"policy\",\"emojis\":{"
+        + "\"wave\":{\"name\":\"wave\",\"image\":\"v2-1f7aa843a3fdba53a0e9bc68df43c900_b.webp\",\"width\":24,\"height\":24},"
+        + "\"clap\":{\"name\":\"clap\",\"image\":\"v2-8c0630ce70d80b1af5e5eb7057d008b0_b.webp\",\"width\":24,\"height\":24}}}";
+    private static final Duration PAST_FIRST_FRAME = Duration.ofSeconds(11);
+
+    private ActivityController<Activity> activityController;
+    private LinearLayout content;
+
+    @Before
+    public void setUp() {
+        activityController = Robolectric.buildActivity(Activity.class).setup();
+        Activity activity = activityController.get();
+        ScrollView scrollView = new ScrollView(activity);
+        content = new LinearLayout(activity);
+        content.setOrientation(LinearLayout.VERTICAL);
+        scrollView.addView(content);
+        activity.setContentView(scrollView);
+        EmojiPerfHarness.awaitAtlas();
+    }
+
+    @After
+    public void tearDown() {
+        activityController.pause().stop().destroy();
+        // 帧序列按图片共享，清空缓存避免上一个用例推进过的帧带到下一个用例
+        EmojiMessageCache.getInstance().clear();
+        EmojiDrawableCache.getInstance().trimToSize(0);
+    }
+
+    private EmojiTextView addText(String text, int marginTop) {
+        EmojiTextView view = new EmojiTextView(activityController.get());
+        view.setEmojiConfig(CONFIG_JSON);
+        view.setTextContent(text);
+        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        params.topMargin = marginTop;
+        content.addView(view, params);
+        idleFor(Duration.ofMillis(16));
+        return view;
+    }
+
+    /**
+     * 等待文本中所有emoji加载完成，返回它们的帧序列
+     */
+    private static AnimatedEmojiFrames[] awaitFrames(View view) throws InterruptedException {
+        Spanned text = (Spanned) ((EmojiTextView) view).getText();
+        AnimatedEmojiSpan[] spans = text.getSpans(0, text.length(), AnimatedEmojiSpan.class);
+        AnimatedEmojiFrames[] frames = new AnimatedEmojiFrames[spans.length];
+        for (int i = 0; i < spans.length; i++) {
+            EmojiDrawableCache.Entry entry = spans[i].getCacheEntry();
+            assertNotNull("span was not measured", entry);
+            CountDownLatch loaded = new CountDownLatch(1);
+            entry.whenLoaded(loaded::countDown);
+            assertTrue("image did not load", loaded.await(10, TimeUnit.SECONDS));
+            idleFor(Duration.ofMillis(16));
+            frames[i] = spans[i].getAnimatedFrames();
+            assertNotNull("WebP was not decoded into frames", frames[i]);
+            assertTrue(frames[i].isAnimated());
+        }
+        return frames;
+    }
+
+    private static void idleFor(Duration duration) {
+        shadowOf(Looper.getMainLooper()).idleFor(duration);
+    }
+
+    @Test
+    public void visibleWebpAdvances() throws InterruptedException {
+        AnimatedEmojiFrames[] frames = awaitFrames(addText("[wave]", 0));
+        assertEquals(0, frames[0].getFrameIndex());
+        idleFor(PAST_FIRST_FRAME);
+        assertEquals(1, frames[0].getFrameIndex());
+    }
+
+    @Test
+    public void offscreenWebpPauses() throws InterruptedException {
+        // 放在ScrollView可见区域下方
+        EmojiTextView view = addText("[wave]", 100000);
+        AnimatedEmojiFrames[] frames = awaitFrames(view);
+        idleFor(PAST_FIRST_FRAME);
+        assertEquals(0, frames[0].getFrameIndex());
+
+        view.setPauseAnimationsOffscreen(false);
+        idleFor(PAST_FIRST_FRAME);
+        assertEquals(1, frames[0].getFrameIndex());
+    }
+
+    @Test
+    public void animatedWebpCountIsCapped() throws InterruptedException {
+        EmojiTextView view = addText("[wave] [clap]", 0);
+        view.setMaxAnimatedEmojis(1);
+        AnimatedEmojiFrames[] frames = awaitFrames(view);
+        idleFor(PAST_FIRST_FRAME);
+        assertEquals(1, frames[0].getFrameIndex());
+        assertEquals(0, frames[1].getFrameIndex());
+    }
+}
@@ -0,0 +1,157 @@
+package com.reactnativeemojichatinput;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import java.time.Duration;
+
+/**
+ * 输入框按键路径的性能回归：逐字输入、合并发送的输入、退格删除和粘贴。
+ *
+ * 每个场景先在一个新的输入框上预热一遍，再在另一个新的输入框上统计。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class EmojiChatInputPerfTest {
+    private static final String MESSAGE = "好的 [smile] see you tomorrow [heart] ok ";
+    private static final int MESSAGE_REPEAT = 5;
+    // 每段包含的已知emoji数量与MESSAGE相同，配置中没有的[unknown]按普通文本处理
+    private static final String PASTE_CHUNK = "[laugh] hello [thumbs_up] 在吗 [unknown] [smile] " + MESSAGE;
+
+    private EmojiPerfHarness harness;
+
+    @Before
+    public void setUp() {
+        harness = new EmojiPerfHarness();
+    }
+
+    @After
+    public void tearDown() {
+        harness.close();
+    }
+
+    private EmojiChatInputView createInput() {
+        EmojiChatInputView view = new EmojiChatInputView(harness.reactContext);
+        view.setEmojiConfig(EmojiPerfHarness.CONFIG_JSON);
+        view.setMultiline(true);
+        harness.attach(view);
+        return view;
+    }
+
+    private static int type(InputConnection connection, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            connection.commitText(text.substring(i, i + 1), 1);
+            EmojiPerfHarness.frame();
+        }
+        return text.length();
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder builder = new StringBuilder(text.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+
+    private EmojiPerfHarness.Result runTyping() {
+        EmojiChatInputView view = createInput();
+        InputConnection connection = view.onCreateInputConnection(new EditorInfo());
+        String text = repeat(MESSAGE, MESSAGE_REPEAT);
+        EmojiPerfHarness.Result result = harness.measure("typing", () -> type(connection, text));
+        assertEquals(text, view.getText().toString());
+        return result;
+    }
+
+    @Test
+    public void typing() {
+        runTyping();
+        EmojiPerfHarness.assertWithinBudget(runTyping());
+    }
+
+    private EmojiPerfHarness.Result runTypingCoalesced() {
+        EmojiChatInputView view = createInput();
+        view.setTextChangeDebounceMs(100);
+        InputConnection connection = view.onCreateInputConnection(new EditorInfo());
+        String text = repeat(MESSAGE, MESSAGE_REPEAT);
+        return harness.measure("typingCoalesced", () -> {
+            int operations = type(connection, text);
+            // 停止输入超过防抖间隔后才发送
+            EmojiPerfHarness.idleFor(Duration.ofMillis(200));
+            return operations;
+        });
+    }
+
+    @Test
+    public void typingCoalesced() {
+        runTypingCoalesced();
+        EmojiPerfHarness.assertWithinBudget(runTypingCoalesced());
+    }
+
+    private EmojiPerfHarness.Result runDeletion() {
+        EmojiChatInputView view = createInput();
+        view.setText(repeat(MESSAGE, MESSAGE_REPEAT));
+        view.setSelection(view.length());
+        EmojiPerfHarness.frame();
+        InputConnection connection = view.onCreateInputConnection(new EditorInfo());
+        EmojiPerfHarness.Result result = harness.measure("deletion", () -> {
+            int operations = 0;
+            while (view.length() > 0) {
+                connection.deleteSurroundingText(1, 0);
+                EmojiPerfHarness.frame();
+                operations++;
+            }
+            return operations;
+        });
+        assertEquals(0, view.length());
+        return result;
+    }
+
+    @Test
+    public void deletion() {
+        runDeletion();
+        EmojiPerfHarness.assertWithinBudget(runDeletion());
+    }
+
+    private EmojiPerfHarness.Result runPaste(String scenario, String clip, int times) {
+        EmojiChatInputView view = createInput();
+        ClipboardManager clipboard = (ClipboardManager) harness.reactContext.getSystemService(Context.CLIPBOARD_SERVICE);
+        clipboard.setPrimaryClip(ClipData.newPlainText("emoji", clip));
+        EmojiPerfHarness.Result result = harness.measure(scenario, () -> {
+            for (int i = 0; i < times; i++) {
+                view.onTextContextMenuItem(android.R.id.paste);
+                EmojiPerfHarness.drainBackgroundWork();
+                EmojiPerfHarness.frame();
+            }
+            return times;
+        });
+        assertEquals(repeat(clip, times), view.getText().toString());
+        return result;
+    }
+
+    @Test
+    public void paste() {
+        runPaste("paste", PASTE_CHUNK, 10);
+        EmojiPerfHarness.assertWithinBudget(runPaste("paste", PASTE_CHUNK, 10));
+    }
+
+    /**
+     * 超过EmojiChatInputView.ASYNC_PASTE_THRESHOLD的粘贴在后台生成span，后台线程的分配不计入
+     */
+    @Test
+    public void pasteLarge() {
+        String clip = repeat(PASTE_CHUNK, 100);
+        runPaste("pasteLarge", clip, 3);
+        EmojiPerfHarness.assertWithinBudget(runPaste("pasteLarge", clip, 3));
+    }
+}
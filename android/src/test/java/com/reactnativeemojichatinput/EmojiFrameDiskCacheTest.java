@@ -0,0 +1,66 @@
+package com.reactnativeemojichatinput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 动画WebP首次解码后写入帧文件，再次加载时直接映射，不再解码
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class EmojiFrameDiskCacheTest {
+    // 打包的动画WebP，两帧
+    private static final String WEBP = "v2-aa54b7872a98efe9400f32c8149c1184_b.webp";
+    private static final int SIZE = 36;
+
+    @Test
+    public void animatedWebpIsMappedAfterFirstDecode() throws InterruptedException {
+        Context context = ApplicationProvider.getApplicationContext();
+        EmojiFrameDiskCache diskCache = EmojiFrameDiskCache.getInstance(context);
+        assertNull(diskCache.open(WEBP, SIZE, SIZE));
+        EmojiPerfStats stats = EmojiPerfStats.getInstance();
+        stats.reset();
+
+        load(context);
+        // 帧文件在IO线程上异步写入
+        AnimatedEmojiFrames.FrameSource mapped = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (mapped == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            mapped = diskCache.open(WEBP, SIZE, SIZE);
+        }
+        assertNotNull("frame file was not written", mapped);
+        assertEquals(2, mapped.getFrameCount());
+        mapped.recycle();
+
+        // 清空内存缓存后再次加载，命中帧文件
+        EmojiDrawableCache.getInstance().trimToSize(0);
+        load(context);
+        EmojiPerfStats.Snapshot snapshot = stats.snapshot();
+        assertEquals(1, snapshot.histograms.get(EmojiPerfStats.IMAGE_DECODE_PREFIX + "webp").count);
+        assertEquals(1, snapshot.histograms.get(EmojiPerfStats.IMAGE_DECODE_PREFIX + "frames").count);
+    }
+
+    private static void load(Context context) throws InterruptedException {
+        EmojiDrawableCache cache = EmojiDrawableCache.getInstance();
+        EmojiDrawableCache.Entry entry = cache.acquire(context, WEBP, SIZE, SIZE);
+        CountDownLatch loaded = new CountDownLatch(1);
+        entry.whenLoaded(loaded::countDown);
+        assertTrue("image did not load", loaded.await(10, TimeUnit.SECONDS));
+        assertTrue(entry.isAnimated());
+        cache.release(entry);
+    }
+}
@@ -0,0 +1,270 @@
+package com.reactnativeemojichatinput;
+
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import androidx.test.core.app.ApplicationProvider;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.uimanager.events.RCTEventEmitter;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ActivityController;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntSupplier;
+
+/**
+ * 性能回归测试的公共部分。
+ *
+ * 每个场景在测试线程上统计耗时、分配的字节数、新建的AnimatedEmojiSpan数量和发往JS的事件数，按操作数求平均后
+ * 与emoji-perf-budgets.json中的预算比较。Robolectric的主线程就是测试线程，布局和延迟发送的事件都计入统计；
+ * 后台线程（异步粘贴、图片加载）的分配不计入，它们新建的span计入。
+ *
+ * 结果以"emoji-perf"开头输出到标准输出，修改预算时以此为准。
+ */
+final class EmojiPerfHarness {
+    // 打包的静态emoji，与应用中一样从图集绘制
+    static final String CONFIG_JSON = "{\"version\":\"perf\",\"emojis\":{"
+        + "\"smile\":{\"name\":\"smile\",\"image\":\"v2-06d341e6b7d0ae30244e121786ffc817_b.jpg\",\"width\":24,\"height\":24},"
+        + "\"laugh\":{\"name\":\"laugh\",\"image\":\"v2-10e71e64097d4f40f6e0509f83bf32e4_b.jpg\",\"width\":24,\"height\":24},"
+        + "\"heart\":{\"name\":\"heart\",\"image\":\"v2-1292a1f80f35fe62f62ae2a4b3111991_b.jpg\",\"width\":24,\"height\":24},"
+        + "\"thumbs_up\":{\"name\":\"thumbs_up\",\"image\":\"v2-3bbdd26101ea0f9cb02b554cf01a20d1_b.jpg\",\"width\":24,\"height\":24}}}";
+
+    private static final String BUDGETS_RESOURCE = "emoji-perf-budgets.json";
+    private static final Duration FRAME = Duration.ofMillis(16);
+
+    private static JSONObject budgets;
+
+    private final MockedStatic<Arguments> arguments;
+    private final ActivityController<Activity> activityController;
+    final ReactContext reactContext;
+    final LinearLayout root;
+    private int eventCount = 0;
+
+    EmojiPerfHarness() {
+        // 原生WritableMap需要加载so，测试中换成纯Java实现
+        arguments = Mockito.mockStatic(Arguments.class);
+        arguments.when(Arguments::createMap).thenAnswer(invocation -> new JavaOnlyMap());
+        arguments.when(Arguments::createArray).thenAnswer(invocation -> new JavaOnlyArray());
+
+        activityController = Robolectric.buildActivity(Activity.class).setup();
+        Activity activity = activityController.get();
+        RCTEventEmitter emitter = (RCTEventEmitter) Proxy.newProxyInstance(
+            RCTEventEmitter.class.getClassLoader(), new Class<?>[] {RCTEventEmitter.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("receiveEvent")) {
+                    eventCount++;
+                }
+                return null;
+            });
+        reactContext = Mockito.mock(ReactContext.class, Mockito.withSettings()
+            .useConstructor(activity)
+            .defaultAnswer(Mockito.CALLS_REAL_METHODS));
+        Mockito.doReturn(emitter).when(reactContext).getJSModule(RCTEventEmitter.class);
+
+        root = new LinearLayout(activity);
+        root.setOrientation(LinearLayout.VERTICAL);
+        activity.setContentView(root);
+        awaitAtlas();
+    }
+
+    /**
+     * 与应用中模块初始化时一样，先等静态图集在后台加载完成，避免测得的是图集加载前的占位绘制
+     */
+    static void awaitAtlas() {
+        if (!EmojiAtlas.getInstance(ApplicationProvider.getApplicationContext()).awaitLoaded(10000)) {
+            fail("Emoji atlas did not load in time");
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    void close() {
+        root.removeAllViews();
+        activityController.pause().stop().destroy();
+        arguments.close();
+    }
+
+    void attach(View view) {
+        root.addView(view, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+            ViewGroup.LayoutParams.WRAP_CONTENT));
+        frame();
+    }
+
+    /**
+     * 推进一帧，执行到期的主线程消息以及布局
+     */
+    static void frame() {
+        shadowOf(Looper.getMainLooper()).idleFor(FRAME);
+    }
+
+    static void idleFor(Duration duration) {
+        shadowOf(Looper.getMainLooper()).idleFor(duration);
+    }
+
+    /**
+     * 等待后台渲染线程上的任务全部完成，并执行它们投递回主线程的结果
+     */
+    static void drainBackgroundWork() {
+        ThreadPoolExecutor executor = EmojiRenderExecutor.get();
+        do {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (executor.getCompletedTaskCount() < executor.getTaskCount()) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("Background render work did not finish in time");
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            shadowOf(Looper.getMainLooper()).idle();
+        } while (executor.getCompletedTaskCount() < executor.getTaskCount());
+    }
+
+    /**
+     * 执行script并统计，script返回执行的操作数
+     */
+    Result measure(String scenario, IntSupplier script) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int eventsBefore = eventCount;
+        long spansBefore = AnimatedEmojiSpan.getCreatedCount();
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        int operations = script.getAsInt();
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocatedBytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        Result result = new Result(scenario, operations, elapsedNanos, allocatedBytes,
+            AnimatedEmojiSpan.getCreatedCount() - spansBefore, eventCount - eventsBefore);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * 与预算文件比较，超出任一项时列出所有超出的指标后失败
+     */
+    static void assertWithinBudget(Result result) {
+        JSONObject budget;
+        try {
+            budget = loadBudgets().getJSONObject("scenarios").getJSONObject(result.scenario);
+        } catch (JSONException e) {
+            throw new AssertionError("No budget for scenario " + result.scenario, e);
+        }
+        if (result.operations <= 0) {
+            fail(result.scenario + " ran no operations");
+        }
+        List<String> violations = new ArrayList<>();
+        Iterator<String> keys = budget.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            double limit = budget.optDouble(key);
+            double actual;
+            switch (key) {
+                case "maxMillisPerOp":
+                    actual = result.millisPerOp();
+                    break;
+                case "maxAllocatedBytesPerOp":
+                    actual = result.allocatedBytesPerOp();
+                    break;
+                case "maxSpansCreatedPerOp":
+                    actual = result.spansCreatedPerOp();
+                    break;
+                case "maxEventsPerOp":
+                    actual = result.eventsPerOp();
+                    break;
+                default:
+                    throw new AssertionError("Unknown budget " + key + " for scenario " + result.scenario);
+            }
+            if (actual > limit) {
+                violations.add(String.format(Locale.US, "%s %.3f > %.3f", key, actual, limit));
+            }
+        }
+        if (!violations.isEmpty()) {
+            fail("Over budget: " + result + "\n  " + String.join("\n  ", violations));
+        }
+    }
+
+    private static synchronized JSONObject loadBudgets() throws JSONException {
+        if (budgets == null) {
+            try (InputStream input = EmojiPerfHarness.class.getClassLoader().getResourceAsStream(BUDGETS_RESOURCE)) {
+                if (input == null) {
+                    throw new AssertionError("Missing test resource " + BUDGETS_RESOURCE);
+                }
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+                budgets = new JSONObject(output.toString("UTF-8"));
+            } catch (IOException e) {
+                throw new AssertionError("Cannot read " + BUDGETS_RESOURCE, e);
+            }
+        }
+        return budgets;
+    }
+
+    static final class Result {
+        final String scenario;
+        final int operations;
+        final long elapsedNanos;
+        final long allocatedBytes;
+        final long spansCreated;
+        final int events;
+
+        Result(String scenario, int operations, long elapsedNanos, long allocatedBytes, long spansCreated, int events) {
+            this.scenario = scenario;
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.spansCreated = spansCreated;
+            this.events = events;
+        }
+
+        double millisPerOp() {
+            return elapsedNanos / 1e6 / operations;
+        }
+
+        double allocatedBytesPerOp() {
+            return (double) allocatedBytes / operations;
+        }
+
+        double spansCreatedPerOp() {
+            return (double) spansCreated / operations;
+        }
+
+        double eventsPerOp() {
+            return (double) events / operations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "emoji-perf %s ops=%d ms/op=%.3f bytes/op=%.0f spans/op=%.3f events/op=%.3f",
+                scenario, operations, millisPerOp(), allocatedBytesPerOp(), spansCreatedPerOp(), eventsPerOp());
+        }
+    }
+}
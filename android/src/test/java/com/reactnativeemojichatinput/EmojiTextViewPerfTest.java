@@ -0,0 +1,92 @@
+package com.reactnativeemojichatinput;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * 消息列表重新绑定的性能回归：少量EmojiTextView轮流显示大量消息，模拟列表滚动时的view复用。
+ *
+ * 第一遍绑定的消息都是新的，需要扫描并创建span；第二遍绑定同样的消息应全部命中EmojiMessageCache。
+ * 消息条数不超过消息缓存的容量。
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class EmojiTextViewPerfTest {
+    private static final int VIEW_COUNT = 20;
+    private static final int MESSAGE_COUNT = 120;
+    private static final int EMOJIS_PER_MESSAGE = 3;
+
+    private EmojiPerfHarness harness;
+    // 各次运行使用不同的消息，避免命中之前测试留在进程级缓存中的结果
+    private static int runCount = 0;
+
+    @Before
+    public void setUp() {
+        harness = new EmojiPerfHarness();
+    }
+
+    @After
+    public void tearDown() {
+        harness.close();
+    }
+
+    private EmojiTextView[] createViews() {
+        EmojiTextView[] views = new EmojiTextView[VIEW_COUNT];
+        for (int i = 0; i < VIEW_COUNT; i++) {
+            views[i] = new EmojiTextView(harness.reactContext);
+            views[i].setEmojiConfig(EmojiPerfHarness.CONFIG_JSON);
+            harness.attach(views[i]);
+        }
+        return views;
+    }
+
+    private static String[] createMessages() {
+        int run = runCount++;
+        String[] messages = new String[MESSAGE_COUNT];
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            messages[i] = "run " + run + " message " + i + " [smile] 好的 see you [heart] tomorrow [laugh]";
+        }
+        return messages;
+    }
+
+    private int bind(EmojiTextView[] views, String[] messages) {
+        for (int i = 0; i < messages.length; i++) {
+            views[i % VIEW_COUNT].setTextContent(messages[i]);
+            EmojiPerfHarness.frame();
+        }
+        return messages.length;
+    }
+
+    private EmojiPerfHarness.Result runRebind() {
+        EmojiTextView[] views = createViews();
+        String[] messages = createMessages();
+        EmojiPerfHarness.Result result = harness.measure("rebind", () -> bind(views, messages));
+        assertEquals((long) MESSAGE_COUNT * EMOJIS_PER_MESSAGE, result.spansCreated);
+        return result;
+    }
+
+    @Test
+    public void rebind() {
+        runRebind();
+        EmojiPerfHarness.assertWithinBudget(runRebind());
+    }
+
+    private EmojiPerfHarness.Result runRebindCached() {
+        EmojiTextView[] views = createViews();
+        String[] messages = createMessages();
+        bind(views, messages);
+        return harness.measure("rebindCached", () -> bind(views, messages));
+    }
+
+    @Test
+    public void rebindCached() {
+        runRebindCached();
+        EmojiPerfHarness.assertWithinBudget(runRebindCached());
+    }
+}
@@ -17,6 +17,9 @@ IOS_ASSETS_DIR = os.path.join(PROJECT_ROOT, 'ios', 'RNEmojiChatInput', 'Assets',
 # Android资源目录
 ANDROID_ASSETS_DIR = os.path.join(PROJECT_ROOT, 'android', 'src', 'main', 'assets', 'emoji')
 
+# 打包到Android assets中的配置文件，与EmojiConfigStore.DEFAULT_ASSET_PATH保持一致
+ANDROID_CONFIG_PATH = os.path.join(PROJECT_ROOT, 'android', 'src', 'main', 'assets', 'emoji-config.json')
+
 def update_emojis():
     print("开始更新emoji资源...")
 
@@ -72,6 +75,10 @@ def update_emojis():
     with open(EMOJI_CONFIG_PATH, 'w', encoding='utf-8') as f:
         json.dump(emoji_config, f, indent=2, ensure_ascii=False)
 
+    # 原生侧可以直接从assets加载配置，不经过JS传递
+    shutil.copy(EMOJI_CONFIG_PATH, ANDROID_CONFIG_PATH)
+
+    # Android静态emoji精灵图集由android/emoji-atlas.gradle在构建时生成
     print("Emoji资源更新完成！")
 
 if __name__ == "__main__":
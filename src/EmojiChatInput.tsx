@@ -10,19 +10,24 @@ import type {
   EmojiChatInputProps,
   EmojiChatInputRef,
   TextChangeEvent,
+  TextChangeDiffEvent,
   EmojiInsertEvent,
   SubmitEvent,
+  TruncateEvent,
 } from './types';
+import { EmojiUtils } from './EmojiUtils';
 
 const LINKING_ERROR =
   `The package 'react-native-emoji-chat-input' doesn't seem to be linked. Make sure: \n\n` +
   '- You rebuilt the app after installing the package\n' +
   '- You are not using Expo Go\n';
 
-interface NativeProps extends Omit<EmojiChatInputProps, 'onTextChange' | 'onEmojiInsert' | 'onSubmit'> {
-  onTextChange?: (event: NativeSyntheticEvent<TextChangeEvent>) => void;
+interface NativeProps
+  extends Omit<EmojiChatInputProps, 'onTextChange' | 'onEmojiInsert' | 'onSubmit' | 'onTruncate'> {
+  onTextChange?: (event: NativeSyntheticEvent<TextChangeEvent | TextChangeDiffEvent>) => void;
   onEmojiInsert?: (event: NativeSyntheticEvent<EmojiInsertEvent>) => void;
   onSubmit?: (event: NativeSyntheticEvent<SubmitEvent>) => void;
+  onTruncate?: (event: NativeSyntheticEvent<TruncateEvent>) => void;
 }
 
 const ComponentName = 'RNEmojiChatInput';
@@ -41,6 +46,7 @@ const EmojiChatInput = forwardRef<EmojiChatInputRef, EmojiChatInputProps>(
       onTextChange,
       onEmojiInsert,
       onSubmit,
+      onTruncate,
       placeholder = '输入消息...',
       placeholderColor = '#999999',
       textColor = '#000000',
@@ -54,6 +60,8 @@ const EmojiChatInput = forwardRef<EmojiChatInputRef, EmojiChatInputProps>(
     ref
   ) => {
     const nativeRef = useRef(null);
+    // 最近一次收到的完整文本，差量事件基于它还原
+    const lastTextRef = useRef('');
 
     useImperativeHandle(ref, () => ({
       insertEmoji: (emojiName: string) => {
@@ -113,8 +121,31 @@ const EmojiChatInput = forwardRef<EmojiChatInputRef, EmojiChatInputProps>(
       },
     }));
 
-    const handleTextChange = (event: NativeSyntheticEvent<TextChangeEvent>) => {
-      onTextChange?.(event.nativeEvent);
+    const handleTextChange = (
+      event: NativeSyntheticEvent<TextChangeEvent | TextChangeDiffEvent>
+    ) => {
+      const nativeEvent = event.nativeEvent;
+      if ('text' in nativeEvent) {
+        lastTextRef.current = nativeEvent.text;
+        // iOS原生事件不带plainText，在这里补上
+        onTextChange?.({
+          ...nativeEvent,
+          plainText:
+            nativeEvent.plainText ?? EmojiUtils.removeEmojiMarkers(nativeEvent.text),
+        });
+        return;
+      }
+      const previous = lastTextRef.current;
+      const text =
+        previous.slice(0, nativeEvent.start) +
+        nativeEvent.inserted +
+        previous.slice(nativeEvent.end);
+      lastTextRef.current = text;
+      onTextChange?.({
+        text,
+        plainText: EmojiUtils.removeEmojiMarkers(text),
+        tokens: nativeEvent.tokens,
+      });
     };
 
     const handleEmojiInsert = (event: NativeSyntheticEvent<EmojiInsertEvent>) => {
@@ -125,6 +156,10 @@ const EmojiChatInput = forwardRef<EmojiChatInputRef, EmojiChatInputProps>(
       onSubmit?.(event.nativeEvent);
     };
 
+    const handleTruncate = (event: NativeSyntheticEvent<TruncateEvent>) => {
+      onTruncate?.(event.nativeEvent);
+    };
+
     const containerStyle: ViewStyle = {
       minHeight: 40,
       borderWidth: 1,
@@ -149,6 +184,7 @@ const EmojiChatInput = forwardRef<EmojiChatInputRef, EmojiChatInputProps>(
         onTextChange={handleTextChange}
         onEmojiInsert={handleEmojiInsert}
         onSubmit={handleSubmit}
+        onTruncate={handleTruncate}
         {...otherProps}
       />
     );
@@ -0,0 +1,159 @@
+import { InteractionManager, NativeEventEmitter, NativeModules } from 'react-native';
+import type {
+  EmojiCacheStats,
+  EmojiChatInputConfig,
+  EmojiPerformanceStats,
+  EmojiPrefetchOptions,
+  EmojiPrefetchResult,
+} from './types';
+
+// 目前仅Android提供该原生模块，其他平台上各方法为空操作
+const NativeEmojiModule = NativeModules.RNEmojiChatInputModule;
+
+const PREFETCH_PROGRESS_EVENT = 'EmojiPrefetchProgress';
+
+let prefetchRequestId = 0;
+
+/**
+ * 原生emoji模块封装，用于配置和查看原生侧的emoji缓存
+ */
+export class EmojiNativeManager {
+  /**
+   * 设置已解析消息缓存的最大条数
+   * @param maxEntries 最多缓存的消息条数，传0关闭缓存
+   */
+  static setMessageCacheSize(maxEntries: number): void {
+    NativeEmojiModule?.setMessageCacheSize(maxEntries);
+  }
+
+  /**
+   * 设置空闲emoji图片缓存的最大字节数
+   * @param maxSizeBytes 最大字节数
+   */
+  static setDrawableCacheSize(maxSizeBytes: number): void {
+    NativeEmojiModule?.setDrawableCacheSize(maxSizeBytes);
+  }
+
+  /**
+   * 清空消息缓存和未被使用的emoji图片缓存
+   */
+  static clearCaches(): void {
+    NativeEmojiModule?.clearCaches();
+  }
+
+  /**
+   * 获取缓存命中率等统计信息
+   * @returns 缓存统计信息，平台不支持时返回null
+   */
+  static async getCacheStats(): Promise<EmojiCacheStats | null> {
+    if (!NativeEmojiModule) {
+      return null;
+    }
+    return NativeEmojiModule.getCacheStats();
+  }
+
+  /**
+   * 获取原生侧各阶段耗时的直方图和计数器，用于按机型上报p50/p99
+   * @returns 性能统计快照，平台不支持时返回null
+   */
+  static async getPerformanceStats(): Promise<EmojiPerformanceStats | null> {
+    if (!NativeEmojiModule) {
+      return null;
+    }
+    return NativeEmojiModule.getPerformanceStats();
+  }
+
+  /**
+   * 清空耗时直方图和计数器，通常在上报一次统计后调用
+   */
+  static resetPerformanceStats(): void {
+    NativeEmojiModule?.resetPerformanceStats();
+  }
+
+  /**
+   * 在后台预加载emoji图片，使首次渲染直接命中缓存，适合在应用启动或空闲时调用
+   * @param configId registerEmojiConfig或loadEmojiConfigFromAssets返回的配置id
+   * @param options 预加载的emoji、字号和字体、内存预算和进度回调
+   * @returns 预加载结果，平台不支持时返回null
+   */
+  static async prefetchEmojis(
+    configId: string,
+    options: EmojiPrefetchOptions = {}
+  ): Promise<EmojiPrefetchResult | null> {
+    if (!NativeEmojiModule) {
+      return null;
+    }
+    if (options.whenIdle) {
+      await new Promise<void>((resolve) => {
+        InteractionManager.runAfterInteractions(() => resolve());
+      });
+    }
+
+    const requestId = String(++prefetchRequestId);
+    const onProgress = options.onProgress;
+    const subscription = onProgress
+      ? new NativeEventEmitter(NativeEmojiModule).addListener(
+          PREFETCH_PROGRESS_EVENT,
+          (event: { requestId: string; loaded: number; total: number }) => {
+            if (event.requestId === requestId) {
+              onProgress({ loaded: event.loaded, total: event.total });
+            }
+          }
+        )
+      : null;
+
+    try {
+      return await NativeEmojiModule.prefetchEmojis(
+        configId,
+        options.names ?? null,
+        options.fontSizes ?? null,
+        options.fontWeight ?? null,
+        options.budgetBytes ?? 0,
+        requestId
+      );
+    } finally {
+      subscription?.remove();
+    }
+  }
+
+  /**
+   * 在原生侧注册emoji配置，之后组件通过emojiConfigId引用，不再为每个组件传递完整配置。
+   * 同一个configId重新注册时，已挂载的组件只更新引用了变化emoji的内容
+   * @param config emoji配置
+   * @param configId 配置id，不传时按配置内容生成
+   * @returns 配置id，平台不支持时返回null
+   */
+  static async registerEmojiConfig(
+    config: EmojiChatInputConfig,
+    configId?: string
+  ): Promise<string | null> {
+    if (!NativeEmojiModule) {
+      return null;
+    }
+    return NativeEmojiModule.registerEmojiConfig(config, configId ?? null);
+  }
+
+  /**
+   * 直接加载打包在Android assets中的配置文件并注册，配置内容不经过JS
+   * @param path assets中的路径，默认为emoji-config.json
+   * @param configId 配置id，不传时按配置内容生成
+   * @returns 配置id，平台不支持时返回null
+   */
+  static async loadEmojiConfigFromAssets(
+    path?: string,
+    configId?: string
+  ): Promise<string | null> {
+    if (!NativeEmojiModule) {
+      return null;
+    }
+    return NativeEmojiModule.loadEmojiConfigFromAssets(path ?? null, configId ?? null);
+  }
+
+  /**
+   * 移除已注册的配置，已经使用该配置的组件不受影响
+   * @param configId 配置id
+   */
+  static unregisterEmojiConfig(configId: string): void {
+    NativeEmojiModule?.unregisterEmojiConfig(configId);
+  }
+}
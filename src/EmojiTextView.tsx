@@ -7,12 +7,17 @@ export interface EmojiTextViewProps {
   style?: ViewStyle;
   text?: string;
   emojiConfig?: EmojiChatInputConfig;
+  emojiConfigId?: string;
   fontSize?: number;
   color?: string;
   fontWeight?: 'normal' | 'bold' | 'italic';
   textAlign?: 'left' | 'center' | 'right';
   numberOfLines?: number;
   ellipsizeMode?: 'head' | 'middle' | 'tail' | 'clip';
+  asyncRendering?: boolean;
+  pauseAnimationsOffscreen?: boolean;
+  lowPowerAnimationFps?: number;
+  maxAnimatedEmojis?: number;
 }
 
 export interface EmojiTextViewRef {
@@ -28,12 +33,17 @@ const EmojiTextView = forwardRef<EmojiTextViewRef, EmojiTextViewProps>(
         style={props.style}
         text={props.text}
         emojiConfig={props.emojiConfig}
+        emojiConfigId={props.emojiConfigId}
         fontSize={props.fontSize}
         color={props.color}
         fontWeight={props.fontWeight}
         textAlign={props.textAlign}
         numberOfLines={props.numberOfLines}
         ellipsizeMode={props.ellipsizeMode}
+        asyncRendering={props.asyncRendering}
+        pauseAnimationsOffscreen={props.pauseAnimationsOffscreen}
+        lowPowerAnimationFps={props.lowPowerAnimationFps}
+        maxAnimatedEmojis={props.maxAnimatedEmojis}
       />
     );
   }
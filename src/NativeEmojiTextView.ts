@@ -6,12 +6,17 @@ import type { EmojiChatInputConfig } from './types';
 export interface NativeEmojiTextViewProps extends ViewProps {
   text?: string;
   emojiConfig?: EmojiChatInputConfig;
+  emojiConfigId?: string;
   fontSize?: number;
   color?: string;
   fontWeight?: 'normal' | 'bold' | 'italic';
   textAlign?: 'left' | 'center' | 'right';
   numberOfLines?: number;
   ellipsizeMode?: 'head' | 'middle' | 'tail' | 'clip';
+  asyncRendering?: boolean;
+  pauseAnimationsOffscreen?: boolean;
+  lowPowerAnimationFps?: number;
+  maxAnimatedEmojis?: number;
 }
 
 export default codegenNativeComponent<NativeEmojiTextViewProps>(
@@ -66,6 +66,44 @@ export class TextUtils {
     return segments;
   }
 
+  /**
+   * 根据原生onTextChange附带的tokens生成文本段落，不再重新解析emoji标记
+   * @param text 事件中的完整文本
+   * @param tokens 按[start, end, id]三个一组排列的token，id为-1表示普通文本
+   * @param emojiMap emoji配置映射
+   * @returns 解析后的文本段落数组
+   */
+  static resolveTokens(
+    text: string,
+    tokens: number[],
+    emojiMap: { [key: string]: EmojiConfig }
+  ): TextSegment[] {
+    const segments: TextSegment[] = [];
+    for (let i = 0; i + 2 < tokens.length; i += 3) {
+      const content = text.substring(tokens[i], tokens[i + 1]);
+      const emoji = tokens[i + 2] >= 0 ? emojiMap[content.slice(1, -1)] : undefined;
+      if (emoji) {
+        segments.push({ type: 'emoji', content, emoji });
+      } else {
+        segments.push({ type: 'text', content });
+      }
+    }
+    return segments;
+  }
+
+  /**
+   * 根据tokens计算显示长度（emoji按1个字符计算），与getDisplayLength一致
+   * @param tokens 按[start, end, id]三个一组排列的token
+   * @returns 显示长度
+   */
+  static getTokensDisplayLength(tokens: number[]): number {
+    let length = 0;
+    for (let i = 0; i + 2 < tokens.length; i += 3) {
+      length += tokens[i + 2] >= 0 ? 1 : tokens[i + 1] - tokens[i];
+    }
+    return length;
+  }
+
   /**
    * 将文本段落数组转换回文本字符串
    * @param segments 文本段落数组
@@ -3,6 +3,7 @@ export { default as EmojiTextView } from './EmojiTextView';
 export { EmojiConfigManager } from './EmojiConfigManager';
 export { EmojiUtils } from './EmojiUtils';
 export { TextUtils } from './TextUtils';
+export { EmojiNativeManager } from './EmojiNativeManager';
 export type {
   EmojiConfig,
   EmojiConfigMap,
@@ -10,11 +11,20 @@ export type {
   TextChangeEvent,
   EmojiInsertEvent,
   SubmitEvent,
+  TruncateEvent,
   EmojiChatInputProps,
   EmojiChatInputRef,
   EmojiTextViewProps,
   EmojiTextViewRef,
   TextSegment,
+  EmojiCacheStats,
+  EmojiMessageCacheStats,
+  EmojiDrawableCacheStats,
+  EmojiPerformanceStats,
+  EmojiPerformanceHistogram,
+  EmojiPrefetchOptions,
+  EmojiPrefetchProgress,
+  EmojiPrefetchResult,
 } from './types';
 
 // 导出默认emoji配置
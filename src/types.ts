@@ -33,6 +33,23 @@ export interface EmojiChatInputConfig {
 
 export interface TextChangeEvent {
   text: string;
+  /** 去掉[name]标记后的纯文本，与原生getPlainText一致 */
+  plainText: string;
+  /**
+   * emitTokens开启时附带，按[start, end, id]三个一组排列，id为-1表示普通文本，
+   * 可以交给TextUtils.resolveTokens还原为文本段落
+   */
+  tokens?: number[];
+}
+
+/**
+ * textChangeDiff开启时原生发送的差量：上一次文本中[start, end)被替换为inserted
+ */
+export interface TextChangeDiffEvent {
+  start: number;
+  end: number;
+  inserted: string;
+  tokens?: number[];
 }
 
 export interface EmojiInsertEvent {
@@ -44,6 +61,12 @@ export interface SubmitEvent {
   text: string;
 }
 
+export interface TruncateEvent {
+  maxLength: number;
+  attemptedLength: number;
+  acceptedLength: number;
+}
+
 export interface EmojiChatInputProps {
   style?: ViewStyle;
   placeholder?: string;
@@ -53,10 +76,19 @@ export interface EmojiChatInputProps {
   multiline?: boolean;
   maxLength?: number;
   emojiConfig?: EmojiChatInputConfig;
+  emojiConfigId?: string;
   cursorColor?: string;
+  pauseAnimationsOffscreen?: boolean;
+  lowPowerAnimationFps?: number;
+  maxAnimatedEmojis?: number;
+  textChangeDebounceMs?: number;
+  textChangeDiff?: boolean;
+  emitTokens?: boolean;
+  countEmojiAsOne?: boolean;
   onTextChange?: (event: TextChangeEvent) => void;
   onEmojiInsert?: (event: EmojiInsertEvent) => void;
   onSubmit?: (event: SubmitEvent) => void;
+  onTruncate?: (event: TruncateEvent) => void;
   onFocus?: () => void;
   onBlur?: () => void;
 }
@@ -73,15 +105,90 @@ export interface EmojiTextViewProps {
   style?: ViewStyle;
   text?: string;
   emojiConfig?: EmojiChatInputConfig;
+  emojiConfigId?: string;
   fontSize?: number;
   color?: string;
   fontWeight?: 'normal' | 'bold' | 'italic';
   textAlign?: 'left' | 'center' | 'right';
   numberOfLines?: number;
   ellipsizeMode?: 'head' | 'middle' | 'tail' | 'clip';
+  asyncRendering?: boolean;
+  pauseAnimationsOffscreen?: boolean;
+  lowPowerAnimationFps?: number;
+  maxAnimatedEmojis?: number;
 }
 
 export interface EmojiTextViewRef {
   // 可以在这里添加需要暴露给父组件的方法
 }
 
+
+export interface EmojiMessageCacheStats {
+  hitCount: number;
+  missCount: number;
+  hitRate: number;
+  size: number;
+  maxSize: number;
+}
+
+export interface EmojiDrawableCacheStats {
+  hitCount: number;
+  missCount: number;
+  evictionCount: number;
+  hitRate: number;
+  activeCount: number;
+  idleCount: number;
+  activeSizeBytes: number;
+  idleSizeBytes: number;
+  maxSizeBytes: number;
+}
+
+export interface EmojiCacheStats {
+  messageCache: EmojiMessageCacheStats;
+  drawableCache: EmojiDrawableCacheStats;
+}
+
+export interface EmojiPerformanceHistogram {
+  count: number;
+  meanMs: number;
+  p50Ms: number;
+  p90Ms: number;
+  p99Ms: number;
+  maxMs: number;
+}
+
+export interface EmojiPerformanceStats {
+  // 各阶段耗时：input.parse、input.draw、text.render、text.parse、text.draw、image.load、
+  // image.decode.<格式>（磁盘帧缓存命中为image.decode.frames）、animation.frame
+  histograms: Record<string, EmojiPerformanceHistogram>;
+  // spansBuilt、image.loadFailed，以及自进程启动起累计的messageCache/drawableCache命中数
+  counters: Record<string, number>;
+  // 最近一帧中正在播放的动画emoji数量
+  animatedLive: number;
+}
+
+export interface EmojiPrefetchProgress {
+  loaded: number;
+  total: number;
+}
+
+export interface EmojiPrefetchOptions {
+  // 需要预加载的emoji名称，不传时预加载配置中的全部emoji
+  names?: string[];
+  // 会用到的字号，默认[16]
+  fontSizes?: number[];
+  // 显示这些emoji的组件的fontWeight，默认normal；字体不同时emoji的像素尺寸可能不同
+  fontWeight?: 'normal' | 'bold' | 'italic';
+  // 预加载的最大字节数，不传时只受图片缓存容量限制
+  budgetBytes?: number;
+  // 等当前交互和动画结束后再开始
+  whenIdle?: boolean;
+  onProgress?: (progress: EmojiPrefetchProgress) => void;
+}
+
+export interface EmojiPrefetchResult {
+  loaded: number;
+  total: number;
+  // 超出预算未预加载的数量
+  skipped: number;
+}